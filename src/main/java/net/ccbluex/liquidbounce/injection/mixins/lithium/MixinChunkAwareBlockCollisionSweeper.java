@@ -4,7 +4,6 @@ import com.llamalad7.mixinextras.injector.ModifyExpressionValue;
 import com.llamalad7.mixinextras.sugar.Local;
 import net.caffeinemc.mods.lithium.common.entity.movement.ChunkAwareBlockCollisionSweeper;
 import net.ccbluex.liquidbounce.common.ShapeFlag;
-import net.ccbluex.liquidbounce.event.EventManager;
 import net.ccbluex.liquidbounce.event.events.BlockShapeEvent;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
@@ -38,8 +37,7 @@ public class MixinChunkAwareBlockCollisionSweeper {
             return original;
         }
 
-        final BlockShapeEvent shapeEvent = EventManager.INSTANCE.callEvent(new BlockShapeEvent(blockState, this.pos, original));
-        return shapeEvent.getShape();
+        return BlockShapeEvent.callReusable(blockState, this.pos, original);
     }
 
 }
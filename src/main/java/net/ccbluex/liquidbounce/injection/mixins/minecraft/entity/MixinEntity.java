@@ -83,6 +83,10 @@ public abstract class MixinEntity {
      */
     @Inject(method = "getTargetingMargin", at = @At("RETURN"), cancellable = true)
     private void hookMargin(CallbackInfoReturnable<Float> callback) {
+        if (!EventManager.INSTANCE.hasActiveListeners(EntityMarginEvent.class)) {
+            return;
+        }
+
         EntityMarginEvent marginEvent = new EntityMarginEvent((Entity) (Object) this, callback.getReturnValue());
         EventManager.INSTANCE.callEvent(marginEvent);
         callback.setReturnValue(marginEvent.getMargin());
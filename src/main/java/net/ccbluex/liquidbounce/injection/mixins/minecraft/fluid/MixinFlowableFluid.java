@@ -36,6 +36,10 @@ public class MixinFlowableFluid {
             return false;
         }
 
+        if (!EventManager.INSTANCE.hasActiveListeners(FluidPushEvent.class)) {
+            return true;
+        }
+
         final FluidPushEvent fluidPushEvent = new FluidPushEvent();
         EventManager.INSTANCE.callEvent(fluidPushEvent);
         return !fluidPushEvent.isCancelled();
@@ -380,8 +380,13 @@ object LiquidBounce : EventListener {
         ChunkScanner.ChunkScannerThread.stopThread()
         EventManager.unregisterAll()
 
-        // Save all configurations
+        // Save all configurations and wait until they are written
         ConfigSystem.storeAll()
+        ConfigSystem.shutdown()
+
+        runCatching(ScriptManager::closeEngine).onFailure { error ->
+            logger.error("Failed to close the script engine.", error)
+        }
 
         // Shutdown browser as last step
         BrowserBackendManager.stop()
@@ -34,6 +34,7 @@ import net.ccbluex.liquidbounce.utils.io.createZipArchive
 import net.ccbluex.liquidbounce.utils.io.extractZip
 import java.io.File
 import java.io.Reader
+import java.io.StringWriter
 import java.io.Writer
 
 /**
@@ -122,6 +123,9 @@ object ConfigSystem {
         val zipFile = File(backupFolder, "$fileName.zip")
         check(!zipFile.exists()) { "Backup file already exists" }
 
+        // The files have to contain the latest values
+        flush()
+
         configurables.map { configurable -> configurable.jsonFile }.createZipArchive(zipFile)
     }
 
@@ -135,6 +139,7 @@ object ConfigSystem {
         // Store all configurables to make sure they are up to date,
         // before we overwrite some of them through [extractZip]
         storeAll()
+        flush()
         extractZip(zipFile, rootFolder)
         loadAll()
     }
@@ -176,22 +181,42 @@ object ConfigSystem {
     /**
      * Store a configurable to a file (will be created if not exists).
      *
+     * The configurable is serialized immediately, but the file is written in the background by [ConfigWriter].
+     * Use [flush] when the file has to be up to date.
+     *
      * The configurable should be known to the config system.
      */
-    fun storeConfigurable(configurable: Configurable) { // Make a new .json file to save our root configurable
-        configurable.jsonFile.runCatching {
-            if (!exists()) {
-                createNewFile().let { logger.debug("Created new file (status: $it)") }
-            }
+    fun storeConfigurable(configurable: Configurable) {
+        runCatching {
+            val file = configurable.jsonFile
+
+            val content = StringWriter().also { serializeConfigurable(configurable, it) }.toString()
 
             logger.debug("Writing config ${configurable.loweredName}...")
-            serializeConfigurable(configurable, bufferedWriter())
-            logger.info("Successfully saved config '${configurable.loweredName}'.")
+            ConfigWriter.write(file, configurable.loweredName, content)
         }.onFailure {
             logger.error("Unable to store config ${configurable.loweredName}", it)
         }
     }
 
+    /**
+     * Writes all stored configurables which are still pending and waits until they are written.
+     */
+    fun flush() {
+        runCatching(ConfigWriter::flush).onFailure {
+            logger.error("Unable to flush configs", it)
+        }
+    }
+
+    /**
+     * Writes all stored configurables which are still pending and rejects all further writes.
+     */
+    fun shutdown() {
+        runCatching(ConfigWriter::shutdown).onFailure {
+            logger.error("Unable to shut down the config writer", it)
+        }
+    }
+
     /**
      * Serialize a configurable to a writer
      */
@@ -0,0 +1,167 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.config
+
+import net.ccbluex.liquidbounce.utils.client.logger
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Writes config files on a background thread.
+ *
+ * Writes of the same file within [DEBOUNCE_MILLIS] are merged, only the latest content is written.
+ * The content is serialized by the caller, so the writer never touches a configurable while it is changed.
+ * Files are written to a temporary file first, which is forced to the disk before it is moved over the old file.
+ * The move is atomic if the file system supports it, then a crash leaves either the old or the new config behind.
+ * Otherwise, the old file is replaced non-atomically.
+ *
+ * The writer thread is a daemon, so [shutdown] has to be called before the client exits,
+ * writes after it are rejected.
+ */
+object ConfigWriter {
+
+    private const val DEBOUNCE_MILLIS = 500L
+    private const val SHUTDOWN_TIMEOUT_SECONDS = 5L
+
+    private val executor = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "config-writer").apply { isDaemon = true }
+    }
+
+    /**
+     * Latest content per file which has not been written yet
+     */
+    private val pending = ConcurrentHashMap<File, PendingWrite>()
+
+    @Volatile
+    private var closed = false
+
+    private val writes = AtomicLong()
+    private val totalWriteNanos = AtomicLong()
+    private val maxWriteNanos = AtomicLong()
+
+    val statistics: Statistics
+        get() = Statistics(pending.size, writes.get(), totalWriteNanos.get(), maxWriteNanos.get())
+
+    /**
+     * Schedules [content] to be written to [file], replacing content which is still pending for it.
+     */
+    fun write(file: File, name: String, content: String) {
+        if (closed) {
+            logger.warn("Config '$name' was stored after the config writer was shut down and is not written.")
+            return
+        }
+
+        // A pending write is still scheduled and will pick up the new content
+        if (pending.put(file, PendingWrite(name, content)) == null) {
+            try {
+                executor.schedule({ writePending(file) }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+            } catch (_: RejectedExecutionException) {
+                // Shut down in between, the remaining pending writes are written by shutdown()
+                logger.warn("Config '$name' was stored while the config writer was shutting down.")
+            }
+        }
+    }
+
+    /**
+     * Writes all pending content and waits until it is done.
+     * Runs on the writer thread, so it cannot be overtaken by an older write.
+     */
+    fun flush() {
+        if (pending.isEmpty()) {
+            return
+        }
+
+        executor.submit {
+            pending.keys.forEach(::writePending)
+        }.get()
+    }
+
+    /**
+     * Writes all pending content, stops the writer thread and rejects all further writes.
+     */
+    fun shutdown() {
+        closed = true
+        flush()
+
+        executor.shutdownNow()
+        executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+
+        // Writes which raced with the shutdown
+        pending.keys.forEach(::writePending)
+    }
+
+    private fun writePending(file: File) {
+        val write = pending.remove(file) ?: return
+        val startTime = System.nanoTime()
+
+        runCatching {
+            val temporaryFile = File(file.parentFile, "${file.name}.tmp")
+            FileChannel.open(
+                temporaryFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            ).use { channel ->
+                val buffer = ByteBuffer.wrap(write.content.toByteArray())
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer)
+                }
+
+                // Otherwise, the move might reach the disk before the content does
+                channel.force(true)
+            }
+
+            try {
+                Files.move(
+                    temporaryFile.toPath(),
+                    file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING
+                )
+            } catch (_: AtomicMoveNotSupportedException) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            }
+        }.onSuccess {
+            logger.info("Successfully saved config '${write.name}'.")
+        }.onFailure {
+            logger.error("Unable to store config ${write.name}", it)
+        }
+
+        val nanos = System.nanoTime() - startTime
+        writes.incrementAndGet()
+        totalWriteNanos.addAndGet(nanos)
+        maxWriteNanos.accumulateAndGet(nanos, ::maxOf)
+    }
+
+    private class PendingWrite(val name: String, val content: String)
+
+    data class Statistics(val pendingWrites: Int, val writes: Long, val totalWriteNanos: Long, val maxWriteNanos: Long)
+
+}
@@ -24,6 +24,7 @@ import net.ccbluex.liquidbounce.config.types.NamedChoice
 import net.ccbluex.liquidbounce.config.types.Value
 import net.ccbluex.liquidbounce.config.types.ValueType
 import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.EventManager
 import net.ccbluex.liquidbounce.features.module.MinecraftShortcuts
 import net.ccbluex.liquidbounce.script.ScriptApiRequired
 import net.ccbluex.liquidbounce.utils.kotlin.mapArray
@@ -41,6 +42,14 @@ class ChoiceConfigurable<T : Choice>(
     var choices: MutableList<T> = choicesCallback(this).toMutableList()
     private var defaultChoice: T = choices[activeChoiceIndexCallback(choices)]
     var activeChoice: T = defaultChoice
+        set(value) {
+            val previous = field
+            field = value
+
+            // Keeps the active hook index of the event manager up-to-date
+            EventManager.notifyActivationChanged(previous)
+            EventManager.notifyActivationChanged(value)
+        }
 
     init {
         for (choice in choices) {
@@ -137,6 +146,9 @@ abstract class Choice(name: String) : Configurable(name), EventListener, NamedCh
     override val running: Boolean
         get() = super.running && isSelected
 
+    override val isActivated: Boolean
+        get() = isSelected
+
     override fun parent() = this.parent.eventListener
 
     protected fun <T: Choice> choices(name: String, active: T, choices: Array<T>) =
@@ -24,6 +24,7 @@ import net.ccbluex.liquidbounce.config.gson.stategies.ProtocolExclude
 import net.ccbluex.liquidbounce.config.types.Value
 import net.ccbluex.liquidbounce.config.types.ValueType
 import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.EventManager
 import net.ccbluex.liquidbounce.features.module.MinecraftShortcuts
 import net.ccbluex.liquidbounce.script.ScriptApiRequired
 
@@ -40,7 +41,9 @@ abstract class ToggleableConfigurable(
 ) : EventListener, Configurable(name, valueType = ValueType.TOGGLEABLE, aliases = aliases), MinecraftShortcuts {
 
     // TODO: Make enabled change also call newState
-    internal var enabled by boolean("Enabled", enabled)
+    internal var enabled by boolean("Enabled", enabled).onChanged {
+        EventManager.notifyActivationChanged(this)
+    }
 
     fun newState(state: Boolean) {
         if (!enabled) {
@@ -68,6 +71,9 @@ abstract class ToggleableConfigurable(
     override val running: Boolean
         get() = super.running && enabled
 
+    override val isActivated: Boolean
+        get() = enabled
+
     override fun parent() = parent
 
     @ScriptApiRequired
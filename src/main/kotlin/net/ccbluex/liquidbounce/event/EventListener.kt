@@ -45,6 +45,16 @@ interface EventListener {
     val running: Boolean
         get() = parent()?.running ?: !isDestructed
 
+    /**
+     * The toggle-driven part of [running], e.g. whether a module is enabled or a choice is selected,
+     * without the parent chain and without anything that changes on its own (like being in-game).
+     *
+     * [EventManager] caches it to keep hooks of inactive listeners out of the dispatch, so whenever
+     * it changes, [EventManager.notifyActivationChanged] has to be called.
+     */
+    val isActivated: Boolean
+        get() = true
+
     /**
      * Parent [EventListener]
      */
@@ -18,11 +18,15 @@
  */
 package net.ccbluex.liquidbounce.event
 
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet
+import net.ccbluex.liquidbounce.config.types.nesting.Choice
+import net.ccbluex.liquidbounce.config.types.nesting.ToggleableConfigurable
 import net.ccbluex.liquidbounce.event.events.*
 import net.ccbluex.liquidbounce.features.misc.HideAppearance.isDestructed
+import net.ccbluex.liquidbounce.features.module.ClientModule
 import net.ccbluex.liquidbounce.utils.client.logger
 import net.ccbluex.liquidbounce.utils.kotlin.sortedInsert
-import java.util.concurrent.CopyOnWriteArrayList
 import kotlin.reflect.KClass
 
 /**
@@ -150,30 +154,62 @@ val ALL_EVENT_CLASSES: Array<KClass<out Event>> = arrayOf(
 
 /**
  * A modern and fast event handler using lambda handlers
+ *
+ * Every event class gets a dense id (its index in [ALL_EVENT_CLASSES]) and a compiled
+ * [EventHookTable]. The table publishes an immutable snapshot of its hooks, which is only
+ * rebuilt on register/unregister or when the activation of a listener changes, so [callEvent]
+ * neither allocates nor takes any lock.
+ *
+ * The snapshot keeps an index of the hooks whose listeners are activated, which means
+ * hooks of disabled modules and unselected choices are not even looked at during dispatch.
  */
 object EventManager {
 
-    private val registry: Map<Class<out Event>, CopyOnWriteArrayList<EventHook<in Event>>> =
-        ALL_EVENT_CLASSES.associate { Pair(it.java, CopyOnWriteArrayList()) }
+    private val eventIds = Reference2IntOpenHashMap<Class<out Event>>(ALL_EVENT_CLASSES.size).apply {
+        defaultReturnValue(-1)
+        ALL_EVENT_CLASSES.forEachIndexed { id, eventClass -> put(eventClass.java, id) }
+    }
+
+    private val tables = Array(ALL_EVENT_CLASSES.size) { EventHookTable() }
+
+    /**
+     * Debug counters of invoked and skipped hooks per event id. These are not synchronized,
+     * as events are called from multiple threads they are only an approximation.
+     */
+    private val invokedHooks = LongArray(ALL_EVENT_CLASSES.size)
+    private val skippedHooks = LongArray(ALL_EVENT_CLASSES.size)
+
+    private val ACTIVATION_AWARE_CLASSES: Set<Class<*>> = setOf(
+        ClientModule::class.java,
+        Choice::class.java,
+        ToggleableConfigurable::class.java
+    )
+
+    private val TRUSTS_ACTIVATION = object : ClassValue<Boolean>() {
+        override fun computeValue(type: Class<*>): Boolean =
+            type.getMethod("getRunning").declaringClass in ACTIVATION_AWARE_CLASSES
+    }
 
     init {
         SequenceManager
     }
 
+    /**
+     * Returns the dense id of [eventClass] or -1 if it is not part of [ALL_EVENT_CLASSES].
+     */
+    fun eventId(eventClass: Class<out Event>): Int = eventIds.getInt(eventClass)
+
     /**
      * Used by handler methods
      */
     fun <T : Event> registerEventHook(eventClass: Class<out Event>, eventHook: EventHook<T>): EventHook<T> {
-        val handlers = registry[eventClass]
-            ?: error("The event '${eventClass.name}' is not registered in Events.kt::ALL_EVENT_CLASSES.")
+        val id = eventId(eventClass)
+        require(id >= 0) {
+            "The event '${eventClass.name}' is not registered in Events.kt::ALL_EVENT_CLASSES."
+        }
 
         @Suppress("UNCHECKED_CAST")
-        val hook = eventHook as EventHook<in Event>
-
-        if (!handlers.contains(hook)) {
-            // `handlers` is sorted descending by EventHook.priority
-            handlers.sortedInsert(hook) { -it.priority }
-        }
+        tables[id].add(eventHook as EventHook<in Event>)
 
         return eventHook
     }
@@ -182,22 +218,64 @@ object EventManager {
      * Unregisters a handler.
      */
     fun <T : Event> unregisterEventHook(eventClass: Class<out Event>, eventHook: EventHook<T>) {
+        val id = eventId(eventClass)
+        if (id < 0) {
+            return
+        }
+
         @Suppress("UNCHECKED_CAST")
-        registry[eventClass]?.remove(eventHook as EventHook<in Event>)
+        tables[id].removeIf { it === eventHook as EventHook<in Event> }
     }
 
     fun unregisterEventHandler(eventListener: EventListener) {
-        registry.values.forEach {
-            it.removeIf { it.handlerClass == eventListener }
+        for (table in tables) {
+            table.removeIf { it.handlerClass == eventListener }
         }
     }
 
     fun unregisterAll() {
-        registry.values.forEach {
-            it.clear()
+        for (table in tables) {
+            table.removeIf { true }
         }
     }
 
+    /**
+     * Has to be called whenever [EventListener.isActivated] of [listener] changes,
+     * e.g. when a module gets toggled or another choice gets selected.
+     *
+     * Only the tables containing hooks of [listener] or of its children are recompiled.
+     */
+    fun notifyActivationChanged(listener: EventListener) {
+        for (table in tables) {
+            table.invalidateIfAffectedBy(listener)
+        }
+    }
+
+    /**
+     * Whether calling an event of [eventClass] would reach at least one handler.
+     *
+     * Hot hooks check this before they build their event, so they cost nothing while no enabled
+     * module listens. A handler might start or stop running at any time, so this is only a hint.
+     */
+    fun hasActiveListeners(eventClass: Class<out Event>): Boolean {
+        if (isDestructed) {
+            return false
+        }
+
+        val id = eventIds.getInt(eventClass)
+        if (id < 0) {
+            return false
+        }
+
+        for (eventHook in tables[id].snapshot().activeHooks) {
+            if (eventHook.handlerClass.running) {
+                return true
+            }
+        }
+
+        return false
+    }
+
     /**
      * Call event to listeners
      *
@@ -208,20 +286,220 @@ object EventManager {
             return event
         }
 
-        val target = registry[event.javaClass] ?: return event
+        val id = eventIds.getInt(event.javaClass)
+        if (id < 0) {
+            return event
+        }
+
+        val snapshot = tables[id].snapshot()
 
-        for (eventHook in target) {
+        if (EventProfiler.enabled) {
+            callEventProfiled(event, id, snapshot)
+            return event
+        }
+
+        var invoked = 0
+
+        for (eventHook in snapshot.activeHooks) {
             if (!eventHook.handlerClass.running) {
                 continue
             }
 
-            runCatching {
+            invoked++
+
+            try {
                 eventHook.handler(event)
-            }.onFailure {
-                logger.error("Exception while executing handler.", it)
+            } catch (throwable: Throwable) {
+                logger.error("Exception while executing handler.", throwable)
             }
         }
 
+        invokedHooks[id] += invoked.toLong()
+        skippedHooks[id] += (snapshot.hooks.size - invoked).toLong()
+
         return event
     }
+
+    /**
+     * Same as [callEvent], but measures every hook through [EventProfiler].
+     */
+    private fun <T : Event> callEventProfiled(event: T, id: Int, snapshot: Snapshot) {
+        var invoked = 0
+
+        for (eventHook in snapshot.activeHooks) {
+            if (!eventHook.handlerClass.running) {
+                continue
+            }
+
+            invoked++
+
+            val allocatedBefore = EventProfiler.allocatedBytes()
+            val start = System.nanoTime()
+
+            try {
+                eventHook.handler(event)
+            } catch (throwable: Throwable) {
+                logger.error("Exception while executing handler.", throwable)
+            }
+
+            val nanos = System.nanoTime() - start
+            EventProfiler.record(eventHook, event.javaClass, nanos, EventProfiler.allocatedBytes() - allocatedBefore)
+        }
+
+        invokedHooks[id] += invoked.toLong()
+        skippedHooks[id] += (snapshot.hooks.size - invoked).toLong()
+    }
+
+    /**
+     * Returns the dispatch counters of all event classes which have at least one hook registered.
+     */
+    fun dispatchStatistics(): List<DispatchStatistics> = ALL_EVENT_CLASSES.indices.mapNotNull { id ->
+        val snapshot = tables[id].snapshot()
+        if (snapshot.hooks.isEmpty()) {
+            return@mapNotNull null
+        }
+
+        DispatchStatistics(
+            ALL_EVENT_CLASSES[id].java,
+            snapshot.hooks.size,
+            snapshot.activeHooks.size,
+            invokedHooks[id],
+            skippedHooks[id]
+        )
+    }
+
+    /**
+     * @param invokedHooks total amount of hook invocations
+     * @param skippedHooks total amount of hooks which were skipped because their listener was not running
+     */
+    data class DispatchStatistics(
+        val eventClass: Class<out Event>,
+        val registeredHooks: Int,
+        val activeHooks: Int,
+        val invokedHooks: Long,
+        val skippedHooks: Long
+    )
+
+    /**
+     * Whether [listener] might be running, based on [EventListener.isActivated] of itself and its parents.
+     *
+     * [EventListener.isActivated] is only trusted for listeners which use the [EventListener.running] implementation
+     * of one of the [ACTIVATION_AWARE_CLASSES], as a custom [EventListener.running] might ignore it (or its parent).
+     */
+    private fun isActivationGateOpen(listener: EventListener): Boolean {
+        var current: EventListener? = listener
+
+        try {
+            while (current != null) {
+                if (!TRUSTS_ACTIVATION.get(current.javaClass)) {
+                    return true
+                }
+
+                if (!current.isActivated) {
+                    return false
+                }
+
+                current = current.parent()
+            }
+        } catch (throwable: Throwable) {
+            // Listeners which are not fully constructed yet might fail, we simply keep their hooks
+            logger.debug("Unable to evaluate activation of $listener", throwable)
+        }
+
+        return true
+    }
+
+    private class Snapshot(
+        @JvmField val hooks: Array<EventHook<in Event>>,
+        @JvmField val activeHooks: Array<EventHook<in Event>>,
+        @JvmField val stale: Boolean
+    )
+
+    /**
+     * Compiled hooks of a single event class, sorted descending by [EventHook.priority].
+     *
+     * All mutations happen under the monitor of the table, dispatch only reads the volatile [snapshot].
+     */
+    private class EventHookTable {
+
+        private val hooks = ArrayList<EventHook<in Event>>()
+
+        /**
+         * The owners of all hooks including their parents, as of the last compilation.
+         */
+        private val listeners = ReferenceOpenHashSet<EventListener>()
+
+        @Volatile
+        private var snapshot = Snapshot(emptyArray(), emptyArray(), false)
+
+        fun snapshot(): Snapshot {
+            val snapshot = this.snapshot
+            if (!snapshot.stale) {
+                return snapshot
+            }
+
+            return synchronized(this) {
+                val current = this.snapshot
+                if (current.stale) compile() else current
+            }
+        }
+
+        @Synchronized
+        fun add(hook: EventHook<in Event>) {
+            if (hook in hooks) {
+                return
+            }
+
+            hooks.sortedInsert(hook) { -it.priority }
+            invalidate()
+        }
+
+        @Synchronized
+        fun removeIf(predicate: (EventHook<in Event>) -> Boolean) {
+            if (hooks.removeIf(predicate)) {
+                invalidate()
+            }
+        }
+
+        @Synchronized
+        fun invalidateIfAffectedBy(listener: EventListener) {
+            if (listener in listeners) {
+                invalidate()
+            }
+        }
+
+        /**
+         * Hooks are usually registered while their listener is still being constructed, so we do not
+         * evaluate any activation here and leave the compilation to the next dispatch.
+         */
+        private fun invalidate() {
+            val snapshot = this.snapshot
+            if (!snapshot.stale) {
+                this.snapshot = Snapshot(snapshot.hooks, snapshot.activeHooks, true)
+            }
+        }
+
+        private fun compile(): Snapshot {
+            val hooks = hooks.toTypedArray()
+            val activeHooks = hooks.filter { isActivationGateOpen(it.handlerClass) }.toTypedArray()
+
+            listeners.clear()
+            for (hook in hooks) {
+                var current: EventListener? = hook.handlerClass
+                while (current != null && listeners.add(current)) {
+                    current = parentOrNull(current)
+                }
+            }
+
+            return Snapshot(hooks, activeHooks, false).also { snapshot = it }
+        }
+
+        private fun parentOrNull(listener: EventListener) = try {
+            listener.parent()
+        } catch (@Suppress("SwallowedException") throwable: Throwable) {
+            null
+        }
+
+    }
+
 }
@@ -0,0 +1,149 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.event
+
+import net.ccbluex.liquidbounce.config.types.nesting.Configurable
+import net.ccbluex.liquidbounce.utils.kotlin.SampleRingBuffer
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import com.sun.management.ThreadMXBean as AllocationMXBean
+
+/**
+ * Measures how long each [EventHook] takes, grouped by its owner and event class.
+ *
+ * While [enabled] is false, [EventManager.callEvent] does not touch the profiler at all,
+ * so the only remaining cost is reading the flag once per event.
+ */
+object EventProfiler {
+
+    /**
+     * Amount of recent samples kept per hook, used for percentiles.
+     */
+    const val SAMPLE_COUNT = 256
+
+    @Volatile
+    @JvmField
+    var enabled = false
+
+    private val profiles = ConcurrentHashMap<EventHook<*>, HookProfile>()
+
+    private val allocationBean = (ManagementFactory.getThreadMXBean() as? AllocationMXBean)
+        ?.takeIf { it.isThreadAllocatedMemorySupported && it.isThreadAllocatedMemoryEnabled }
+
+    /**
+     * Allocated bytes of the current thread or 0 if the JVM does not support measuring them.
+     */
+    internal fun allocatedBytes() = allocationBean?.currentThreadAllocatedBytes ?: 0L
+
+    internal fun record(hook: EventHook<*>, eventClass: Class<out Event>, nanos: Long, bytes: Long) {
+        profiles.computeIfAbsent(hook) { HookProfile(hook.handlerClass, eventClass) }.record(nanos, bytes)
+    }
+
+    /**
+     * Immutable copies of all profiles. The profiles themselves keep changing while other threads record,
+     * so they must not be sorted directly.
+     */
+    fun snapshots(): List<HookSnapshot> = profiles.values.map(HookProfile::snapshot)
+
+    fun reset() {
+        profiles.clear()
+    }
+
+    /**
+     * Profile of a single hook. The recent durations are kept in a ring buffer,
+     * which makes recording constant time and allocation-free.
+     */
+    class HookProfile(val owner: EventListener, val eventClass: Class<out Event>) {
+
+        /**
+         * Readable path of the owner, e.g. `Speed::Hypixel`
+         */
+        val ownerName = generateSequence(owner) { it.parent() }
+            .toList()
+            .asReversed()
+            .joinToString("::") { (it as? Configurable)?.name ?: it.javaClass.simpleName }
+
+        var invocations = 0L
+            private set
+        var totalNanos = 0L
+            private set
+        var maxNanos = 0L
+            private set
+
+        /**
+         * Estimated, as handlers might also allocate on other threads or trigger other events.
+         */
+        var allocatedBytes = 0L
+            private set
+
+        private val samples = SampleRingBuffer(SAMPLE_COUNT)
+
+        val averageNanos: Long
+            get() = if (invocations == 0L) 0L else totalNanos / invocations
+
+        @Synchronized
+        internal fun record(nanos: Long, bytes: Long) {
+            invocations++
+            totalNanos += nanos
+            allocatedBytes += bytes
+
+            if (nanos > maxNanos) {
+                maxNanos = nanos
+            }
+
+            samples.record(nanos)
+        }
+
+        /**
+         * Returns the [percentile] (0..1) of the recent samples in nanoseconds.
+         */
+        @Synchronized
+        fun percentile(percentile: Double) = samples.percentile(percentile)
+
+        @Synchronized
+        fun snapshot() = HookSnapshot(
+            ownerName,
+            eventClass,
+            invocations,
+            totalNanos,
+            averageNanos,
+            maxNanos,
+            samples.percentile(0.5),
+            samples.percentile(0.99),
+            allocatedBytes
+        )
+
+    }
+
+    /**
+     * State of a [HookProfile] at one point in time
+     */
+    data class HookSnapshot(
+        val ownerName: String,
+        val eventClass: Class<out Event>,
+        val invocations: Long,
+        val totalNanos: Long,
+        val averageNanos: Long,
+        val maxNanos: Long,
+        val p50Nanos: Long,
+        val p99Nanos: Long,
+        val allocatedBytes: Long
+    )
+
+}
@@ -96,11 +96,11 @@ class NotificationEvent(val title: String, val message: String, val severity: Se
 class GameModeChangeEvent(val gameMode: GameMode) : Event()
 
 @Nameable("targetChange")
-@WebSocketEvent
+@WebSocketEvent(coalesce = true)
 class TargetChangeEvent(val target: PlayerData?) : Event()
 
 @Nameable("blockCountChange")
-@WebSocketEvent
+@WebSocketEvent(coalesce = true)
 class BlockCountChangeEvent(val count: Int?) : Event()
 
 @Nameable("clientChatStateChange")
@@ -197,7 +197,7 @@ class VirtualScreenEvent(val screenName: String, val action: Action) : Event() {
 class ServerPingedEvent(val server: ServerInfo) : Event()
 
 @Nameable("componentsUpdate")
-@WebSocketEvent(serializer = GsonInstance.ACCESSIBLE_INTEROP)
+@WebSocketEvent(serializer = GsonInstance.ACCESSIBLE_INTEROP, coalesce = true)
 class ComponentsUpdate(val components: List<Component>) : Event()
 
 @Nameable("rotationUpdate")
@@ -29,12 +29,12 @@ import net.ccbluex.liquidbounce.utils.client.Nameable
 import net.minecraft.text.Text
 
 @Nameable("fps")
-@WebSocketEvent
+@WebSocketEvent(coalesce = true)
 @Suppress("unused")
 class FpsChangeEvent(val fps: Int) : Event()
 
 @Nameable("clientPlayerData")
-@WebSocketEvent
+@WebSocketEvent(coalesce = true)
 @Suppress("unused")
 class ClientPlayerDataEvent(val playerData: PlayerData) : Event() {
     companion object {
@@ -43,7 +43,7 @@ class ClientPlayerDataEvent(val playerData: PlayerData) : Event() {
 }
 
 @Nameable("clientPlayerInventory")
-@WebSocketEvent
+@WebSocketEvent(coalesce = true)
 @Suppress("unused")
 class ClientPlayerInventoryEvent(val inventory: PlayerInventoryData) : Event() {
     companion object {
@@ -22,9 +22,11 @@ package net.ccbluex.liquidbounce.event.events
 
 import net.ccbluex.liquidbounce.event.CancellableEvent
 import net.ccbluex.liquidbounce.event.Event
+import net.ccbluex.liquidbounce.event.EventManager
 import net.ccbluex.liquidbounce.utils.client.Nameable
 import net.minecraft.block.Block
 import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
 import net.minecraft.client.world.ClientWorld
 import net.minecraft.entity.Entity
 import net.minecraft.entity.EquipmentSlot
@@ -32,6 +34,7 @@ import net.minecraft.entity.player.PlayerEntity
 import net.minecraft.item.ItemStack
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.shape.VoxelShape
+import net.minecraft.util.shape.VoxelShapes
 
 @Nameable("worldChange")
 class WorldChangeEvent(val world: ClientWorld?) : Event()
@@ -49,7 +52,53 @@ class ChunkDeltaUpdateEvent(val x: Int, val z: Int) : Event()
 class BlockChangeEvent(val blockPos: BlockPos, val newState: BlockState) : Event()
 
 @Nameable("blockShape")
-class BlockShapeEvent(var state: BlockState, var pos: BlockPos, var shape: VoxelShape) : Event()
+class BlockShapeEvent(var state: BlockState, var pos: BlockPos, var shape: VoxelShape) : Event() {
+
+    companion object {
+
+        private val reusableEvent = ThreadLocal.withInitial {
+            ReusableEvent(BlockShapeEvent(Blocks.AIR.defaultState, BlockPos.ORIGIN, VoxelShapes.empty()))
+        }
+
+        /**
+         * Calls the event for every block of a collision sweep and returns the possibly modified shape.
+         *
+         * The event instance is reused by the current thread, so handlers must not keep it.
+         * Nothing is called if no handler is running.
+         */
+        @JvmStatic
+        fun callReusable(state: BlockState, pos: BlockPos, shape: VoxelShape): VoxelShape {
+            if (!EventManager.hasActiveListeners(BlockShapeEvent::class.java)) {
+                return shape
+            }
+
+            val reusable = reusableEvent.get()
+
+            // A handler might sweep collisions on its own, the nested call needs its own instance
+            if (reusable.inUse) {
+                return EventManager.callEvent(BlockShapeEvent(state, pos, shape)).shape
+            }
+
+            val event = reusable.event
+            event.state = state
+            event.pos = pos
+            event.shape = shape
+
+            reusable.inUse = true
+            try {
+                return EventManager.callEvent(event).shape
+            } finally {
+                reusable.inUse = false
+            }
+        }
+
+    }
+
+    private class ReusableEvent(val event: BlockShapeEvent) {
+        var inUse = false
+    }
+
+}
 
 @Nameable("blockBreakingProgress")
 class BlockBreakingProgressEvent(val pos: BlockPos) : Event()
@@ -49,6 +49,7 @@ object CommandScript : CommandFactory {
             .subcommand(unloadSubcommand())
             .subcommand(debugSubcommand())
             .subcommand(listSubcommand())
+            .subcommand(profileSubcommand())
             .subcommand(browseSubcommand())
             .subcommand(editSubcommand())
             .build()
@@ -78,7 +79,9 @@ object CommandScript : CommandFactory {
 
     private fun listSubcommand() = CommandBuilder.begin("list").handler { command, _ ->
         val scripts = ScriptManager.scripts
-        val scriptNames = scripts.map { script -> "${script.scriptName} (${script.language})" }
+        val scriptNames = scripts.map { script ->
+            "${script.scriptName} (${script.language}, load ${script.loadTime} ms, warm-up ${script.warmUpTime} ms)"
+        }
 
         if (scriptNames.isEmpty()) {
             chat(regular(command.result("noScripts")))
@@ -88,6 +91,34 @@ object CommandScript : CommandFactory {
         chat(regular(command.result("scripts", variable(scriptNames.joinToString(", ")))))
     }.build()
 
+    private fun profileSubcommand() = CommandBuilder.begin("profile").parameter(
+        ParameterBuilder.begin<Boolean>("reset")
+            .verifiedBy(ParameterBuilder.BOOLEAN_VALIDATOR)
+            .optional()
+            .build()
+    ).handler { command, args ->
+        val scripts = ScriptManager.scripts
+
+        if (scripts.isEmpty()) {
+            chat(regular(command.result("noScripts")))
+            return@handler
+        }
+
+        if (args.getOrNull(0) as? Boolean == true) {
+            scripts.forEach { script -> script.profile.reset() }
+            chat(regular(command.result("reset")))
+            return@handler
+        }
+
+        for (script in scripts) {
+            chat(regular(command.result("script", variable(script.scriptName))))
+
+            for ((handler, statistics) in script.profile.entries()) {
+                chat(regular(command.result("handler", variable(handler), variable(statistics.toString()))))
+            }
+        }
+    }.build()
+
     private fun debugSubcommand() = CommandBuilder.begin("debug")
         .parameter(
             ParameterBuilder.begin<String>("name")
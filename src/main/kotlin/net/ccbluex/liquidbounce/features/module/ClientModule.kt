@@ -141,6 +141,8 @@ open class ClientModule(
         }
 
         new
+    }.onChanged {
+        EventManager.notifyActivationChanged(this)
     }
 
     /**
@@ -149,6 +151,9 @@ open class ClientModule(
     override val running: Boolean
         get() = super.running && inGame && (enabled || notActivatable)
 
+    override val isActivated: Boolean
+        get() = enabled || notActivatable
+
     val bind by bind("Bind", InputBind(InputUtil.Type.KEYSYM, bind, bindAction))
         .doNotIncludeWhen { !AutoConfig.includeConfiguration.includeBinds }
         .independentDescription().apply {
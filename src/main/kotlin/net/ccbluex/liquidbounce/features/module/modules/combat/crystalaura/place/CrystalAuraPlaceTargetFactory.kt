@@ -26,7 +26,7 @@ import net.ccbluex.liquidbounce.features.module.modules.combat.crystalaura.place
 import net.ccbluex.liquidbounce.features.module.modules.combat.crystalaura.place.SubmoduleCrystalPlacer.oldVersion
 import net.ccbluex.liquidbounce.features.module.modules.combat.crystalaura.place.conditions.*
 import net.ccbluex.liquidbounce.render.FULL_BOX
-import net.ccbluex.liquidbounce.utils.block.getSortedSphere
+import net.ccbluex.liquidbounce.utils.block.SphereOffsets
 import net.ccbluex.liquidbounce.utils.block.isBlockedByEntitiesReturnCrystal
 import net.minecraft.util.math.BlockPos
 
@@ -47,10 +47,10 @@ object CrystalAuraPlaceTargetFactory : MinecraftShortcuts {
         PredictBlockageCondition
     )
 
-    private var sphere: Array<BlockPos> = BlockPos.ORIGIN.getSortedSphere(4.5f)
+    private var sphere = SphereOffsets.of(4.5f)
 
     fun updateSphere() {
-        sphere = BlockPos.ORIGIN.getSortedSphere(getMaxRange())
+        sphere = SphereOffsets.of(getMaxRange())
     }
 
     fun updateTarget(excludeIds : IntArray?) {
@@ -103,11 +103,8 @@ object CrystalAuraPlaceTargetFactory : MinecraftShortcuts {
         val context = PlacementContext(basePlace, basePlaceLayers, expectedCrystal, target)
 
         val playerPos = player.blockPos
-        val pos = BlockPos.Mutable()
-        sphere.forEach {
+        sphere.forEach(playerPos) { pos ->
             // conditionChain
-            pos.set(playerPos).move(it)
-
             val cache = CandidateCache(pos)
             if (conditionChain.all { condition -> condition.isValid(context, cache, pos) }) {
                 val blocked = cache.up.isBlockedByEntitiesReturnCrystal(box = expectedCrystal, excludeIds = excludeIds)
@@ -66,7 +66,7 @@ object PhaseBlink : Choice("Blink") {
         state = State.FLUSHING
         // This is very important; otherwise the anti-cheat will know that we've
         // started walking through a block before it disappeared
-        PacketQueueManager.flush { snapshot -> snapshot.origin == TransferOrigin.INCOMING }
+        PacketQueueManager.flush(TransferOrigin.INCOMING)
         state = State.WAITING
         super.disable()
     }
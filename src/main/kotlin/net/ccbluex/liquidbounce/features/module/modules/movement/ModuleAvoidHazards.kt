@@ -19,11 +19,10 @@
 package net.ccbluex.liquidbounce.features.module.modules.movement
 
 import net.ccbluex.liquidbounce.config.types.NamedChoice
-import net.ccbluex.liquidbounce.event.events.BlockShapeEvent
-import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.features.module.Category
 import net.ccbluex.liquidbounce.features.module.ClientModule
 import net.ccbluex.liquidbounce.utils.block.getBlock
+import net.ccbluex.liquidbounce.utils.block.shapeOverride
 import net.minecraft.block.*
 import net.minecraft.fluid.FluidState
 import net.minecraft.fluid.Fluids
@@ -51,10 +50,11 @@ object ModuleAvoidHazards : ClientModule("AvoidHazards", Category.MOVEMENT) {
         16.0
     )
 
-    @Suppress("unused")
-    val shapeHandler = handler<BlockShapeEvent> { event ->
-        avoid.find { it.test(event.state.block, event.state.fluidState, event.pos) }?.let {
-            event.shape = if (it.fullCube) VoxelShapes.fullCube() else UNSAFE_BLOCK_CAP
+    init {
+        shapeOverride { state, pos ->
+            avoid.find { it.test(state.block, state.fluidState, pos) }?.let {
+                if (it.fullCube) VoxelShapes.fullCube() else UNSAFE_BLOCK_CAP
+            }
         }
     }
 
@@ -18,10 +18,9 @@
  */
 package net.ccbluex.liquidbounce.features.module.modules.movement
 
-import net.ccbluex.liquidbounce.event.events.BlockShapeEvent
-import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.features.module.Category
 import net.ccbluex.liquidbounce.features.module.ClientModule
+import net.ccbluex.liquidbounce.utils.block.shapeOverride
 import net.minecraft.block.Blocks
 import net.minecraft.util.shape.VoxelShapes
 
@@ -35,10 +34,9 @@ object ModuleBlockWalk : ClientModule("BlockWalk", Category.MOVEMENT) {
 
     private val blocks by blocks("Blocks", hashSetOf(Blocks.COBWEB, Blocks.SNOW))
 
-    @Suppress("unused")
-    val shapeHandler = handler<BlockShapeEvent> { event ->
-        if (event.state.block in blocks) {
-            event.shape = VoxelShapes.fullCube()
+    init {
+        shapeOverride { state, _ ->
+            if (state.block in blocks) VoxelShapes.fullCube() else null
         }
     }
 }
@@ -55,7 +55,7 @@ object ModuleChestStealer : ClientModule("ChestStealer", Category.PLAYER) {
     }
 
     override fun disable() {
-        FeatureChestAura.interactedBlocksSet.clear()
+        FeatureChestAura.clearInteracted()
         super.disable()
     }
 
@@ -81,7 +81,15 @@ object FeatureChestAura : ToggleableConfigurable(ModuleChestStealer, "Aura", tru
 
     // The block position currently being interacted with
     private var currentTargetBlock: BlockPos? = null
-    val interactedBlocksSet = hashSetOf<BlockPos>()
+    private val interactedBlocks = hashSetOf<BlockPos>()
+    val interactedBlocksSet: Set<BlockPos>
+        get() = interactedBlocks
+
+    /**
+     * Incremented on every change of [interactedBlocksSet], so renderers can tell when it has changed
+     */
+    var interactedBlocksVersion = 0
+        private set
 
     // Counter for the number of tries performed to interact with a block
     private var interactionAttempts = 0
@@ -189,7 +197,7 @@ object FeatureChestAura : ToggleableConfigurable(ModuleChestStealer, "Aura", tru
                     }
                 }
             } else {
-                interactedBlocksSet.add(targetBlockPos)
+                markInteracted(targetBlockPos)
                 targetBlockPos.recordAnotherChestPart(targetBlockPos.getState())
                 currentTargetBlock = null
                 wasInteractionSuccessful = true
@@ -200,7 +208,7 @@ object FeatureChestAura : ToggleableConfigurable(ModuleChestStealer, "Aura", tru
 
             // Update interacted block set and reset target if successful or exceeded retries
             if (wasInteractionSuccessful || interactionAttempts >= AwaitContainerSettings.maxInteractionRetries) {
-                interactedBlocksSet.add(targetBlockPos)
+                markInteracted(targetBlockPos)
                 targetBlockPos.recordAnotherChestPart(targetBlockPos.getState())
                 currentTargetBlock = null
             } else {
@@ -219,7 +227,18 @@ object FeatureChestAura : ToggleableConfigurable(ModuleChestStealer, "Aura", tru
             else -> return
         }
 
-        interactedBlocksSet.add(another)
+        markInteracted(another)
+    }
+
+    private fun markInteracted(pos: BlockPos) {
+        if (interactedBlocks.add(pos)) {
+            interactedBlocksVersion++
+        }
+    }
+
+    fun clearInteracted() {
+        interactedBlocks.clear()
+        interactedBlocksVersion++
     }
 
 }
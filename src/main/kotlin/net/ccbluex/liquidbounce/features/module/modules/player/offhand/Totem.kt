@@ -30,7 +30,6 @@ import net.ccbluex.liquidbounce.utils.math.toVec3d
 import net.minecraft.block.BedBlock
 import net.minecraft.block.RespawnAnchorBlock
 import net.minecraft.entity.EntityPose
-import net.minecraft.util.math.BlockPos
 
 object Totem : ToggleableConfigurable(ModuleOffhand, "Totem", true) {
 
@@ -90,7 +89,7 @@ object Totem : ToggleableConfigurable(ModuleOffhand, "Totem", true) {
          * Predicts explosions from beds and respawn anchors.
          */
         private val explosionDamageBlocks by boolean("PredictExplosionDamageBlocks", false).onChanged {
-            sphere = BlockPos.ORIGIN.getSortedSphere(10f)
+            sphere = SphereOffsets.of(10f)
         }
 
         private object FallDamage : ToggleableConfigurable(this, "PredictFallDamage", true) {
@@ -128,7 +127,7 @@ object Totem : ToggleableConfigurable(ModuleOffhand, "Totem", true) {
 
         //val mainHand by boolean("MainHand", false)
 
-        private var sphere: Array<BlockPos>? = null
+        private var sphere: SphereOffsets? = null
 
         fun healthBelowThreshold(): Boolean {
             if (!enabled) {
@@ -206,8 +205,7 @@ object Totem : ToggleableConfigurable(ModuleOffhand, "Totem", true) {
             val playerPos = player.blockPos
             var maxDamage = 0f
 
-            sphere!!.forEach {
-                val pos = it.add(playerPos)
+            sphere!!.forEach(playerPos) { pos ->
                 val block = pos.getBlock()
                 val state = pos.getState()!!
 
@@ -217,17 +215,19 @@ object Totem : ToggleableConfigurable(ModuleOffhand, "Totem", true) {
                     return@forEach
                 }
 
+                val explosionPos = pos.toImmutable()
+
                 // exclude the block as it gets removed before the explosion happens
                 val exclude = if (noBedExplosion) {
                     // the anchor is just the block itself
-                    arrayOf(pos)
+                    arrayOf(explosionPos)
                 } else {
                     // a bed consists of two blocks
-                    arrayOf(pos, (block as BedBlock).getPotentialSecondBedBlock(state, pos))
+                    arrayOf(explosionPos, (block as BedBlock).getPotentialSecondBedBlock(state, explosionPos))
                 }
 
                 maxDamage = maxDamage.coerceAtLeast(
-                    player.getDamageFromExplosion(pos.toVec3d(), 5f, 10f, 100f, exclude)
+                    player.getDamageFromExplosion(explosionPos.toVec3d(), 5f, 10f, 100f, exclude)
                 )
 
                 if (maxDamage >= allowedDamage) {
@@ -284,6 +284,11 @@ object ModuleBedPlates : ClientModule("BedPlates", Category.RENDER) {
     }
 
     private object BedBlockTracker : AbstractBlockLocationTracker.BlockPos2State<BedState>() {
+        /**
+         * Non-bed blocks only matter for single block updates, a chunk scan visits all beds anyway
+         */
+        override val chunkScanFilter: (BlockState) -> Boolean = { it.isBed }
+
         @Suppress("detekt:CognitiveComplexMethod")
         override fun getStateFor(pos: BlockPos, state: BlockState): BedState? {
             return if (state.isBed) {
@@ -18,6 +18,7 @@
  */
 package net.ccbluex.liquidbounce.features.module.modules.render
 
+import com.mojang.blaze3d.systems.RenderSystem
 import net.ccbluex.liquidbounce.config.types.nesting.Choice
 import net.ccbluex.liquidbounce.config.types.nesting.ChoiceConfigurable
 import net.ccbluex.liquidbounce.event.events.DrawOutlinesEvent
@@ -31,7 +32,6 @@ import net.ccbluex.liquidbounce.utils.block.AbstractBlockLocationTracker
 import net.ccbluex.liquidbounce.utils.block.ChunkScanner
 import net.ccbluex.liquidbounce.utils.block.getState
 import net.ccbluex.liquidbounce.utils.inventory.findBlocksEndingWith
-import net.ccbluex.liquidbounce.utils.math.toVec3d
 import net.minecraft.block.Block
 import net.minecraft.block.BlockState
 import net.minecraft.client.util.math.MatrixStack
@@ -71,6 +71,8 @@ object ModuleBlockESP : ClientModule("BlockESP", Category.RENDER) {
 
         private val outline by boolean("Outline", true)
 
+        private val meshRenderer = ChunkMeshRenderer(BlockTracker)
+
         @Suppress("unused")
         val renderHandler = handler<WorldRenderEvent> { event ->
             val matrixStack = event.matrixStack
@@ -81,62 +83,63 @@ object ModuleBlockESP : ClientModule("BlockESP", Category.RENDER) {
         fun drawBoxMode(matrixStack: MatrixStack, drawOutline: Boolean, fullAlpha: Boolean): Boolean {
             val colorMode = colorMode.activeChoice
 
+            // Colors which are the same for every block are applied as tint, so the buffers survive color changes
+            val uniformColor = when (colorMode) {
+                is GenericStaticColorMode -> colorMode.getColor(null)
+                is GenericRainbowColorMode -> colorMode.getColor(null)
+                else -> null
+            }?.let { if (fullAlpha) it.with(a = 255) else it }
+
             var dirty = false
 
             renderEnvironmentForWorld(matrixStack) {
-                dirty = drawInternal(
-                    BlockTracker.allPositions(),
-                    colorMode,
-                    fullAlpha,
-                    drawOutline
-                )
+                dirty = meshRenderer.render(
+                    this,
+                    bakeKey = if (uniformColor == null) fullAlpha else null,
+                    faceTint = uniformColor ?: Color4b.WHITE,
+                    outlineTint = (uniformColor?.with(a = 150) ?: Color4b.WHITE).takeIf { drawOutline }
+                ) { blockPos, _ ->
+                    emitBlock(blockPos, colorMode.takeIf { uniformColor == null }, fullAlpha)
+                }
             }
 
             return dirty
         }
 
-        private fun WorldRenderEnvironment.drawInternal(
-            blocks: Sequence<BlockPos>,
-            colorMode: GenericColorMode<Pair<BlockPos, BlockState>>,
-            fullAlpha: Boolean,
-            drawOutline: Boolean
-        ): Boolean {
-            var dirty = false
+        private fun ChunkMeshRenderer.MeshBuilder.emitBlock(
+            blockPos: BlockPos,
+            colorMode: GenericColorMode<Pair<BlockPos, BlockState>>?,
+            fullAlpha: Boolean
+        ) {
+            val blockState = blockPos.getState() ?: return
 
-            BoxRenderer.drawWith(this) {
-                for (blockPos in blocks) {
-                    val blockState = blockPos.getState() ?: continue
-
-                    if (blockState.isAir) {
-                        continue
-                    }
-
-                    val outlineShape = blockState.getOutlineShape(world, blockPos)
-                    val boundingBox = if (outlineShape.isEmpty) {
-                        FULL_BOX
-                    } else {
-                        outlineShape.boundingBox
-                    }
+            if (blockState.isAir) {
+                return
+            }
 
-                    var color = colorMode.getColor(Pair(blockPos, blockState))
+            val outlineShape = blockState.getOutlineShape(world, blockPos)
+            val boundingBox = if (outlineShape.isEmpty) {
+                FULL_BOX
+            } else {
+                outlineShape.boundingBox
+            }
 
-                    if (fullAlpha) {
-                        color = color.with(a = 255)
-                    }
+            if (colorMode == null) {
+                box(blockPos, boundingBox, Color4b.WHITE, Color4b.WHITE)
+                return
+            }
 
-                    withPositionRelativeToCamera(blockPos.toVec3d()) {
-                        drawBox(
-                            boundingBox,
-                            faceColor = color,
-                            outlineColor = color.with(a = 150).takeIf { drawOutline }
-                        )
-                    }
+            var color = colorMode.getColor(Pair(blockPos, blockState))
 
-                    dirty = true
-                }
+            if (fullAlpha) {
+                color = color.with(a = 255)
             }
 
-            return dirty
+            box(blockPos, boundingBox, color, color.with(a = 150))
+        }
+
+        fun clearMeshes() {
+            RenderSystem.recordRenderCall(meshRenderer::clear)
         }
     }
 
@@ -183,9 +186,12 @@ object ModuleBlockESP : ClientModule("BlockESP", Category.RENDER) {
 
     override fun disable() {
         ChunkScanner.unsubscribe(BlockTracker)
+        Box.clearMeshes()
     }
 
-    private object BlockTracker : AbstractBlockLocationTracker.State2BlockPos<Block>() {
+    private object BlockTracker : AbstractBlockLocationTracker.ChunkBucketed<Block>() {
+        override val chunkScanFilter: (BlockState) -> Boolean = { it.block in targets }
+
         override fun getStateFor(pos: BlockPos, state: BlockState): Block? =
             state.block?.takeIf { it in targets }
     }
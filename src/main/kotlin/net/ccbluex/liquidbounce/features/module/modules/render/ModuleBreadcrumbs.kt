@@ -21,6 +21,7 @@ package net.ccbluex.liquidbounce.features.module.modules.render
 import com.mojang.blaze3d.systems.RenderSystem
 import it.unimi.dsi.fastutil.objects.ObjectFloatMutablePair
 import it.unimi.dsi.fastutil.objects.ObjectFloatPair
+import net.ccbluex.liquidbounce.config.types.NamedChoice
 import net.ccbluex.liquidbounce.config.types.nesting.ToggleableConfigurable
 import net.ccbluex.liquidbounce.event.events.GameTickEvent
 import net.ccbluex.liquidbounce.event.events.WorldChangeEvent
@@ -28,8 +29,10 @@ import net.ccbluex.liquidbounce.event.events.WorldRenderEvent
 import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.features.module.Category
 import net.ccbluex.liquidbounce.features.module.ClientModule
+import net.ccbluex.liquidbounce.render.engine.TrailRingBuffer
 import net.ccbluex.liquidbounce.render.engine.type.Color4b
 import net.ccbluex.liquidbounce.render.renderEnvironmentForWorld
+import net.ccbluex.liquidbounce.render.shader.shaders.TrailShader
 import net.ccbluex.liquidbounce.render.utils.rainbow
 import net.ccbluex.liquidbounce.utils.kotlin.component1
 import net.ccbluex.liquidbounce.utils.kotlin.component2
@@ -41,6 +44,7 @@ import net.minecraft.client.render.VertexFormat.DrawMode
 import net.minecraft.client.render.VertexFormats
 import net.minecraft.client.util.math.MatrixStack
 import net.minecraft.entity.Entity
+import net.minecraft.util.math.MathHelper
 import org.joml.Matrix4f
 import org.joml.Vector3f
 import org.joml.Vector4f
@@ -57,6 +61,10 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
     private val color by color("Color", Color4b(253, 181, 172, 120))
     private val colorRainbow by boolean("Rainbow", false)
     private val height by float("Height", 0.5f, 0f..2f)
+    private val renderMode by enumChoice("RenderMode", RenderMode.IMMEDIATE).onChanged {
+        // Values can be changed from other threads, the trails belong to the render thread
+        RenderSystem.recordRenderCall(::clear)
+    }
 
     private object TemporaryConfigurable : ToggleableConfigurable(this, "Temporary", true) {
         val alive by int("Alive", 900, 10..10000, "ms")
@@ -70,8 +78,26 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
     private val trails = IdentityHashMap<Entity, Trail>()
     private val lastPositions = IdentityHashMap<Entity, DoubleArray>()
 
+    /**
+     * Trails of [RenderMode.RETAINED], their points live in [ringBuffer]
+     */
+    private val retainedTrails = IdentityHashMap<Entity, RetainedTrail>()
+    private var ringBuffer: TrailRingBuffer? = null
+
+    /**
+     * Points of [ringBuffer] are stored relative to this position and time to keep the float precision
+     */
+    private var originX = 0.0
+    private var originY = 0.0
+    private var originZ = 0.0
+    private var originTime = 0L
+
     override fun disable() {
-        clear()
+        RenderSystem.recordRenderCall {
+            clear()
+            ringBuffer?.close()
+            ringBuffer = null
+        }
     }
 
     val renderHandler = handler<WorldRenderEvent> { event ->
@@ -79,7 +105,10 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
         val color = if (colorRainbow) rainbow() else color
 
         renderEnvironmentForWorld(matrixStack) {
-            draw(matrixStack, color)
+            when (renderMode) {
+                RenderMode.IMMEDIATE -> draw(matrixStack, color)
+                RenderMode.RETAINED -> drawRetained(matrixStack, color)
+            }
         }
     }
 
@@ -117,6 +146,56 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
         }
     }
 
+    private fun drawRetained(matrixStack: MatrixStack, color: Color4b) {
+        val buffer = ringBuffer ?: return
+        if (retainedTrails.isEmpty()) {
+            return
+        }
+
+        val camera = mc.entityRenderDispatcher.camera ?: return
+        val tickDelta = mc.renderTickCounter.getTickDelta(true)
+
+        // The newest point follows the entity between ticks
+        retainedTrails.forEach { (entity, trail) ->
+            if (trail.newest >= 0) {
+                val pos = entity.getLerpedPos(tickDelta)
+                buffer.write(
+                    trail.slot,
+                    trail.newest,
+                    (pos.x - originX).toFloat(),
+                    (pos.y - originY).toFloat(),
+                    (pos.z - originZ).toFloat(),
+                    trail.newestTime
+                )
+            }
+        }
+
+        val mvp = Matrix4f(RenderSystem.getProjectionMatrix())
+            .mul(RenderSystem.getModelViewMatrix())
+            .mul(matrixStack.peek().positionMatrix)
+
+        if (height > 0) {
+            RenderSystem.disableCull()
+        }
+
+        TrailShader.draw(
+            buffer,
+            mvp,
+            (originX - camera.pos.x).toFloat(),
+            (originY - camera.pos.y).toFloat(),
+            (originZ - camera.pos.z).toFloat(),
+            color,
+            retainedTime(System.currentTimeMillis()),
+            if (TemporaryConfigurable.enabled) TemporaryConfigurable.alive.toFloat() else 0f,
+            TemporaryConfigurable.fade && TemporaryConfigurable.enabled,
+            height
+        )
+
+        if (height > 0) {
+            RenderSystem.enableCull()
+        }
+    }
+
     /**
      * Updates all trails.
      */
@@ -124,9 +203,14 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
     val updateHandler = handler<GameTickEvent> {
         val time = System.currentTimeMillis()
 
+        if (renderMode == RenderMode.RETAINED) {
+            prepareRingBuffer()
+        }
+
         if (onlyOwn) {
             updateEntityTrail(time, player)
             trails.keys.retainAll { it === player || !it.isAlive }
+            removeRetainedTrails { it !== player && it.isAlive }
             return@handler
         }
 
@@ -135,6 +219,7 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
         trails.keys.removeIf { key ->
             actualPresent.none { it === key } || !key.isAlive
         }
+        removeRetainedTrails { key -> actualPresent.none { it === key } || !key.isAlive }
     }
 
     private fun updateEntityTrail(time: Long, entity: Entity) {
@@ -144,7 +229,75 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
         }
 
         lastPositions[entity] = doubleArrayOf(entity.x, entity.y, entity.z)
-        trails.getOrPut(entity, ::Trail).positions.add(TrailPart(entity.x, entity.y, entity.z, time))
+
+        when (renderMode) {
+            RenderMode.IMMEDIATE -> trails.getOrPut(entity, ::Trail).positions
+                .add(TrailPart(entity.x, entity.y, entity.z, time))
+            RenderMode.RETAINED -> appendRetained(time, entity)
+        }
+    }
+
+    /**
+     * Recreates the ring buffer when the amount of points a trail can show has changed.
+     */
+    private fun prepareRingBuffer() {
+        val capacity = if (TemporaryConfigurable.enabled) {
+            // One point per tick, two more for the moving head and the expiring tail
+            MathHelper.smallestEncompassingPowerOfTwo(TemporaryConfigurable.alive / 50 + 2)
+        } else {
+            PERSISTENT_TRAIL_CAPACITY
+        }
+
+        if (ringBuffer?.capacity == capacity) {
+            return
+        }
+
+        clear()
+        ringBuffer?.close()
+        ringBuffer = TrailRingBuffer(capacity)
+    }
+
+    private fun appendRetained(time: Long, entity: Entity) {
+        val buffer = ringBuffer ?: return
+
+        if (retainedTrails.isEmpty()) {
+            originX = entity.x
+            originY = entity.y
+            originZ = entity.z
+            originTime = time
+        }
+
+        val trail = retainedTrails.getOrPut(entity) { RetainedTrail(buffer.allocate()) }
+        val index = (trail.newest + 1) % buffer.capacity
+
+        trail.newest = index
+        trail.newestTime = retainedTime(time)
+        buffer.write(
+            trail.slot,
+            index,
+            (entity.x - originX).toFloat(),
+            (entity.y - originY).toFloat(),
+            (entity.z - originZ).toFloat(),
+            trail.newestTime
+        )
+    }
+
+    /**
+     * Time of the ring buffer, 0 marks unused points
+     */
+    private fun retainedTime(time: Long) = (time - originTime + 1).toFloat()
+
+    private inline fun removeRetainedTrails(predicate: (Entity) -> Boolean) {
+        val iterator = retainedTrails.entries.iterator()
+
+        while (iterator.hasNext()) {
+            val (entity, trail) = iterator.next()
+
+            if (predicate(entity)) {
+                ringBuffer?.free(trail.slot)
+                iterator.remove()
+            }
+        }
     }
 
     @Suppress("unused")
@@ -155,6 +308,32 @@ object ModuleBreadcrumbs : ClientModule("Breadcrumbs", Category.RENDER, aliases
     private fun clear() {
         lastPositions.clear()
         trails.clear()
+        removeRetainedTrails { true }
+    }
+
+    /**
+     * Points a trail keeps in [RenderMode.RETAINED] when they don't expire
+     */
+    private const val PERSISTENT_TRAIL_CAPACITY = 1024
+
+    private enum class RenderMode(override val choiceName: String) : NamedChoice {
+        /**
+         * Tessellates all points every frame
+         */
+        IMMEDIATE("Immediate"),
+
+        /**
+         * Appends points to a ring buffer on the GPU once per tick and draws all trails at once
+         */
+        RETAINED("Retained")
+    }
+
+    private class RetainedTrail(val slot: Int) {
+        /**
+         * Index of the newest point in the slot, -1 if there is none yet
+         */
+        var newest = -1
+        var newestTime = 0f
     }
 
     @JvmRecord
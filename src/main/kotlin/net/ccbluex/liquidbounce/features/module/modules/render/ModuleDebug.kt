@@ -18,8 +18,12 @@
  */
 package net.ccbluex.liquidbounce.features.module.modules.render
 
+import net.ccbluex.liquidbounce.config.types.NamedChoice
 import net.ccbluex.liquidbounce.config.types.nesting.ToggleableConfigurable
+import net.ccbluex.liquidbounce.event.Event
 import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.EventManager
+import net.ccbluex.liquidbounce.event.EventProfiler
 import net.ccbluex.liquidbounce.event.Sequence
 import net.ccbluex.liquidbounce.event.events.GameTickEvent
 import net.ccbluex.liquidbounce.event.events.MovementInputEvent
@@ -93,8 +97,130 @@ object ModuleDebug : ClientModule("Debug", Category.RENDER) {
 
     }
 
+    /**
+     * Shows how many hooks were invoked and skipped per event type during the last second
+     */
+    object EventDispatch : ToggleableConfigurable(this, "EventDispatch", false) {
+
+        private val top by int("Top", 10, 1..50)
+
+        private var lastStatistics = emptyMap<Class<out Event>, EventManager.DispatchStatistics>()
+        private var ticks = 0
+
+        @Suppress("unused")
+        private val tickHandler = handler<GameTickEvent> {
+            if (++ticks % 20 != 0) {
+                return@handler
+            }
+
+            val statistics = EventManager.dispatchStatistics()
+            val previous = lastStatistics
+            lastStatistics = statistics.associateBy { it.eventClass }
+
+            statistics.map { current ->
+                val last = previous[current.eventClass]
+                Triple(
+                    current,
+                    current.invokedHooks - (last?.invokedHooks ?: 0),
+                    current.skippedHooks - (last?.skippedHooks ?: 0)
+                )
+            }.sortedByDescending { (_, invoked, skipped) -> invoked + skipped }
+                .take(top)
+                .forEach { (current, invoked, skipped) ->
+                    debugParameter(
+                        EventManager,
+                        current.eventClass.simpleName,
+                        "$invoked invoked, $skipped skipped/s " +
+                            "(${current.activeHooks}/${current.registeredHooks} hooks active)"
+                    )
+                }
+        }
+
+    }
+
+    /**
+     * Shows the most expensive event hooks measured by [EventProfiler]
+     */
+    object EventProfilerOverlay : ToggleableConfigurable(this, "EventProfiler", false) {
+
+        private val sortBy by enumChoice("SortBy", SortBy.TOTAL_TIME)
+        private val top by int("Top", 15, 1..50)
+
+        private enum class SortBy(
+            override val choiceName: String,
+            val selector: (EventProfiler.HookSnapshot) -> Long
+        ) : NamedChoice {
+            TOTAL_TIME("TotalTime", { it.totalNanos }),
+            AVERAGE_TIME("AverageTime", { it.averageNanos }),
+            MAX_TIME("MaxTime", { it.maxNanos }),
+            INVOCATIONS("Invocations", { it.invocations }),
+            ALLOCATIONS("Allocations", { it.allocatedBytes })
+        }
+
+        @Suppress("unused")
+        private val renderHandler = handler<OverlayRenderEvent> { event ->
+            val profiles = EventProfiler.snapshots()
+                .sortedByDescending(sortBy.selector)
+                .take(top)
+
+            renderEnvironmentForGUI {
+                fontRenderer.withBuffers { buffers ->
+                    with(event.context) {
+                        draw(
+                            process("Event Profiler".asText()),
+                            300f,
+                            22f,
+                            shadow = true,
+                            scale = 0.3f
+                        )
+
+                        profiles.forEachIndexed { index, profile ->
+                            val text = "${profile.ownerName} ".asText().formatted(Formatting.GOLD)
+                                .append(profile.eventClass.simpleName.asText().formatted(Formatting.DARK_AQUA))
+                                .append(
+                                    (" ${profile.invocations}x, total ${profile.totalNanos / 1_000_000}ms," +
+                                        " avg ${profile.averageNanos / 1000}µs," +
+                                        " p99 ${profile.p99Nanos / 1000}µs," +
+                                        " max ${profile.maxNanos / 1000}µs," +
+                                        " ${profile.allocatedBytes / 1024}KiB").asText().formatted(Formatting.GRAY)
+                                )
+
+                            draw(
+                                process(text),
+                                300f,
+                                40 + ((fontRenderer.height * 0.17f) * index),
+                                shadow = true,
+                                scale = 0.17f
+                            )
+                        }
+
+                        commit(buffers)
+                    }
+                }
+            }
+        }
+
+    }
+
     init {
         tree(RenderSimulatedPlayer)
+        tree(EventDispatch)
+        tree(EventProfilerOverlay)
+    }
+
+    /**
+     * Whether we have turned on the [EventProfiler], it might also be controlled through the interop API.
+     */
+    private var profilerRequested = false
+
+    @Suppress("unused")
+    private val profilerStateHandler = handler<GameTickEvent> {
+        val running = EventProfilerOverlay.running
+
+        if (running != profilerRequested) {
+            profilerRequested = running
+            EventProfiler.enabled = running
+        }
     }
 
     private val debuggedGeometry = hashMapOf<DebuggedOwner, DebuggedGeometry>()
@@ -335,6 +461,11 @@ object ModuleDebug : ClientModule("Debug", Category.RENDER) {
     }
 
     override fun disable() {
+        if (profilerRequested) {
+            profilerRequested = false
+            EventProfiler.enabled = false
+        }
+
         // Might clean up some memory if we disable the module
         debuggedGeometry.clear()
         debugParameters.clear()
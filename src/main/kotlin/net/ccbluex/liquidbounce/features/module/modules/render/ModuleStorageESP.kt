@@ -18,6 +18,7 @@
  */
 package net.ccbluex.liquidbounce.features.module.modules.render
 
+import com.mojang.blaze3d.systems.RenderSystem
 import net.ccbluex.liquidbounce.config.types.nesting.Choice
 import net.ccbluex.liquidbounce.config.types.nesting.ChoiceConfigurable
 import net.ccbluex.liquidbounce.event.events.DrawOutlinesEvent
@@ -33,7 +34,6 @@ import net.ccbluex.liquidbounce.utils.block.AbstractBlockLocationTracker
 import net.ccbluex.liquidbounce.utils.block.ChunkScanner
 import net.ccbluex.liquidbounce.utils.block.getState
 import net.ccbluex.liquidbounce.utils.entity.interpolateCurrentPosition
-import net.ccbluex.liquidbounce.utils.math.toVec3d
 import net.minecraft.block.BlockRenderType
 import net.minecraft.block.BlockState
 import net.minecraft.block.entity.*
@@ -73,6 +73,7 @@ object ModuleStorageESP : ClientModule("StorageESP", Category.RENDER, aliases =
 
     override fun disable() {
         ChunkScanner.unsubscribe(StorageScanner)
+        BoxMode.clearMeshes()
     }
 
     private object BoxMode : Choice("Box") {
@@ -82,13 +83,19 @@ object ModuleStorageESP : ClientModule("StorageESP", Category.RENDER, aliases =
 
         private val outline by boolean("Outline", true)
 
+        private val meshRenderer = ChunkMeshRenderer(StorageScanner)
+
         @Suppress("unused")
         val renderHandler = handler<WorldRenderEvent> { event ->
             val matrixStack = event.matrixStack
 
-            val queuedBoxes = collectBoxesToDraw(event)
+            val queuedBoxes = collectEntityBoxesToDraw(event)
 
             renderEnvironmentForWorld(matrixStack) {
+                meshRenderer.render(this, bakeKey(), outlineTint = Color4b.WHITE.takeIf { outline }) { pos, type ->
+                    emitBlock(pos, type)
+                }
+
                 BoxRenderer.drawWith(this) {
                     for ((pos, box, color) in queuedBoxes) {
                         val baseColor = color.with(a = 50)
@@ -102,35 +109,48 @@ object ModuleStorageESP : ClientModule("StorageESP", Category.RENDER, aliases =
             }
         }
 
-        @JvmRecord
-        private data class BoxRecord(val pos: Vec3d, val box: Box, val color: Color4b)
+        /**
+         * Everything the baked chunk meshes depend on besides the tracked positions
+         */
+        private fun bakeKey(): Int {
+            var key = FeatureChestAura.interactedBlocksVersion
 
-        private fun collectBoxesToDraw(event: WorldRenderEvent): List<BoxRecord> {
-            val queuedBoxes = mutableListOf<BoxRecord>()
+            for (type in ChestType.entries) {
+                key = 31 * key + type.color.hashCode()
+            }
 
-            for ((pos, type) in StorageScanner.iterate()) {
-                val color = type.color
+            return key
+        }
 
-                if (color.a <= 0 || !type.shouldRender(pos)) {
-                    continue
-                }
+        private fun ChunkMeshRenderer.MeshBuilder.emitBlock(pos: BlockPos, type: ChestType) {
+            val color = type.color
 
-                val state = pos.getState()
+            if (color.a <= 0 || !type.shouldRender(pos)) {
+                return
+            }
 
-                if (state == null || state.isAir) {
-                    continue
-                }
+            val state = pos.getState()
 
-                val outlineShape = state.getOutlineShape(world, pos)
-                val boundingBox = if (outlineShape.isEmpty) {
-                    FULL_BOX
-                } else {
-                    outlineShape.boundingBox
-                }
+            if (state == null || state.isAir) {
+                return
+            }
 
-                queuedBoxes.add(BoxRecord(pos.toVec3d(), boundingBox, color))
+            val outlineShape = state.getOutlineShape(world, pos)
+            val boundingBox = if (outlineShape.isEmpty) {
+                FULL_BOX
+            } else {
+                outlineShape.boundingBox
             }
 
+            box(pos, boundingBox, color.with(a = 50), color.with(a = 100))
+        }
+
+        @JvmRecord
+        private data class BoxRecord(val pos: Vec3d, val box: Box, val color: Color4b)
+
+        private fun collectEntityBoxesToDraw(event: WorldRenderEvent): List<BoxRecord> {
+            val queuedBoxes = mutableListOf<BoxRecord>()
+
             for (entity in world.entities) {
                 val type = entity.categorize() ?: continue
 
@@ -147,6 +167,10 @@ object ModuleStorageESP : ClientModule("StorageESP", Category.RENDER, aliases =
 
         }
 
+        fun clearMeshes() {
+            RenderSystem.recordRenderCall(meshRenderer::clear)
+        }
+
     }
 
     object Glow : Choice("Glow") {
@@ -256,7 +280,9 @@ object ModuleStorageESP : ClientModule("StorageESP", Category.RENDER, aliases =
         open fun shouldRender(pos: BlockPos): Boolean = true
     }
 
-    private object StorageScanner : AbstractBlockLocationTracker.State2BlockPos<ChestType>() {
+    private object StorageScanner : AbstractBlockLocationTracker.ChunkBucketed<ChestType>() {
+        override val chunkScanFilter: (BlockState) -> Boolean = { it.hasBlockEntity() }
+
         override fun getStateFor(pos: BlockPos, state: BlockState): ChestType? {
             val chunk = mc.world?.getChunk(pos) ?: return null
             return chunk.getBlockEntity(pos)?.categorize()
@@ -23,7 +23,7 @@ import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.event.tickHandler
 import net.ccbluex.liquidbounce.utils.inventory.HotbarItemSlot
 import net.ccbluex.liquidbounce.features.module.modules.world.autobuild.ModuleAutoBuild.placer
-import net.ccbluex.liquidbounce.utils.block.getState
+import net.ccbluex.liquidbounce.utils.block.WorldCursor
 import net.ccbluex.liquidbounce.utils.collection.Filter
 import net.ccbluex.liquidbounce.utils.collection.getSlot
 import net.minecraft.block.Blocks
@@ -53,14 +53,13 @@ object PlatformMode : ModuleAutoBuild.AutoBuildMode("Platform") {
     private val targetUpdater = handler<RotationUpdateEvent> {
         val blocks1 = hashSetOf<BlockPos>()
         val center = BlockPos.ofFloored(player.pos).down()
-        val pos = center.mutableCopy()
-        for (x in center.x - platformSize..center.x + platformSize) {
-            for (z in center.z - platformSize..center.z + platformSize) {
-                pos.x = x
-                pos.z = z
-                if (pos.getState()!!.isReplaceable) {
-                    blocks1.add(pos.toImmutable())
-                }
+
+        WorldCursor(world).forEachInSectionOrder(
+            center.add(-platformSize, 0, -platformSize),
+            center.add(platformSize, 0, platformSize)
+        ) { pos, state ->
+            if (state.isReplaceable) {
+                blocks1.add(pos.toImmutable())
             }
         }
 
@@ -21,39 +21,51 @@ package net.ccbluex.liquidbounce.features.module.modules.world.nuker.area
 
 import net.ccbluex.liquidbounce.features.module.modules.world.nuker.ModuleNuker
 import net.ccbluex.liquidbounce.features.module.modules.world.nuker.ModuleNuker.wasTarget
+import net.ccbluex.liquidbounce.utils.block.SphereOffsets
+import net.ccbluex.liquidbounce.utils.block.WorldCursor
 import net.ccbluex.liquidbounce.utils.block.isNotBreakable
-import net.ccbluex.liquidbounce.utils.block.searchBlocksInCuboid
 import net.ccbluex.liquidbounce.utils.entity.box
 import net.minecraft.block.BlockState
 import net.minecraft.block.ShapeContext
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Box
+import net.minecraft.util.math.Vec3d
 import kotlin.jvm.optionals.getOrDefault
+import kotlin.math.sqrt
 
 object SphereNukerArea : NukerArea("Sphere") {
 
+    /**
+     * How far the origin of a block can be from the origin of the eyes block while its shape is still within the
+     * radius around the eyes: the eyes and the closest point can each lie half a block diagonal away from the center
+     * of their block, and collision shapes such as fences overhang their block by up to half a block.
+     */
+    private val EYES_MARGIN = sqrt(3f) + 0.5f
+
     override fun lookupTargets(radius: Float, count: Int?): Sequence<Pair<BlockPos, BlockState>> {
         val rangeSquared = radius * radius
         val eyesPos = player.eyePos
+        val eyesBlockPos = BlockPos.ofFloored(eyesPos)
+        val lastTarget = wasTarget
 
-        val positions = eyesPos.searchBlocksInCuboid(radius) { pos, state ->
-            if (state.isNotBreakable(pos) || !ModuleNuker.isValid(state)) {
-                return@searchBlocksInCuboid false
-            }
+        // The sphere is centered on the eyes, so the blocks are already sorted by their distance to it
+        val candidates = sequence {
+            val cursor = WorldCursor(world)
 
-            val shape = state.getCollisionShape(world, pos, ShapeContext.of(player))
+            SphereOffsets.of(radius + EYES_MARGIN).forEach(eyesBlockPos) { pos ->
+                val state = cursor.getBlockState(pos)
 
-            if (shape.isEmpty) {
-                return@searchBlocksInCuboid false
+                if (isTarget(pos, state, eyesPos, rangeSquared)) {
+                    yield(pos.toImmutable() to state)
+                }
             }
+        }
 
-            shape.offset(pos.x.toDouble(), pos.y.toDouble(), pos.z.toDouble())
-                .getClosestPointTo(eyesPos)
-                .map { vec3d -> vec3d.squaredDistanceTo(eyesPos) <= rangeSquared }
-                .getOrDefault(false)
-        }.sortedBy { (pos, _) ->
-            // If there is a last target, sort by distance to it, otherwise go by hardness
-            wasTarget?.let { pos.getSquaredDistance(it) } ?: pos.getSquaredDistance(player.blockPos)
+        // If there is a last target, sort by distance to it
+        val positions = if (lastTarget != null) {
+            candidates.sortedBy { (pos, _) -> pos.getSquaredDistance(lastTarget) }
+        } else {
+            candidates
         }
 
         val boundingBox = player.box.offset(0.0, -1.0, 0.0)
@@ -64,6 +76,7 @@ object SphereNukerArea : NukerArea("Sphere") {
         // If there are more than one target, we should remove blocks that we are standing on
         val list = nonStandingPositions.ifEmpty { positions }
 
+        // The sequence is lazy, so without a last target the search stops after enough targets have been found
         return if (count != null) {
             list.take(count)
         } else {
@@ -71,4 +84,21 @@ object SphereNukerArea : NukerArea("Sphere") {
         }
     }
 
+    private fun isTarget(pos: BlockPos, state: BlockState, eyesPos: Vec3d, rangeSquared: Float): Boolean {
+        if (state.isNotBreakable(pos) || !ModuleNuker.isValid(state)) {
+            return false
+        }
+
+        val shape = state.getCollisionShape(world, pos, ShapeContext.of(player))
+
+        if (shape.isEmpty) {
+            return false
+        }
+
+        return shape.offset(pos.x.toDouble(), pos.y.toDouble(), pos.z.toDouble())
+            .getClosestPointTo(eyesPos)
+            .map { vec3d -> vec3d.squaredDistanceTo(eyesPos) <= rangeSquared }
+            .getOrDefault(false)
+    }
+
 }
@@ -42,7 +42,7 @@ import kotlin.concurrent.thread
 object ClientInteropServer {
 
     internal var httpServer = HttpServer()
-    private var socketEventHandler = SocketEventListener()
+    internal var socketEventHandler = SocketEventListener()
 
     private const val DEFAULT_PORT = 15000
 
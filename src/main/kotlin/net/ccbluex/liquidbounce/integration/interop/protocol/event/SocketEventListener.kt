@@ -19,12 +19,22 @@
  */
 package net.ccbluex.liquidbounce.integration.interop.protocol.event
 
+import com.google.common.base.Utf8
 import com.google.gson.JsonElement
+import com.google.gson.JsonNull
+import com.google.gson.JsonObject
 import net.ccbluex.liquidbounce.api.core.withScope
 import net.ccbluex.liquidbounce.config.gson.interopGson
 import net.ccbluex.liquidbounce.event.*
+import net.ccbluex.liquidbounce.event.events.GameRenderEvent
+import net.ccbluex.liquidbounce.event.events.GameTickEvent
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
 import net.ccbluex.liquidbounce.integration.interop.ClientInteropServer.httpServer
 import net.ccbluex.liquidbounce.utils.client.logger
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 import kotlin.reflect.KClass
 
 class SocketEventListener : EventListener {
@@ -38,6 +48,33 @@ class SocketEventListener : EventListener {
      */
     private val registeredEvents = hashMapOf<KClass<out Event>, EventHook<in Event>>()
 
+    /**
+     * Streams of events marked with [WebSocketEvent.coalesce]
+     */
+    private val coalescedStreams = ConcurrentHashMap<Class<out Event>, CoalescedStream>()
+
+    private val statistics = ConcurrentHashMap<String, EventStatistics>()
+
+    /**
+     * Maximum amount of coalesced events sent per second and event type
+     */
+    @Volatile
+    var maxCoalescedRate = DEFAULT_MAX_COALESCED_RATE
+        set(value) {
+            field = value.coerceIn(1, MAX_COALESCED_RATE)
+        }
+
+    /**
+     * Sends only the changed fields of coalesced events, the browser has to merge them into the previous state.
+     */
+    @Volatile
+    var deltaEncoding = false
+        set(value) {
+            field = value
+            // The next message has to contain the whole state again
+            coalescedStreams.values.forEach { it.lastSent = null }
+        }
+
     fun registerAll() {
         events.keys.forEach { register(it) }
     }
@@ -59,32 +96,191 @@ class SocketEventListener : EventListener {
     fun unregister(name: String) {
         val eventClass = events[name] ?:
             throw IllegalArgumentException("Unknown event: $name")
-        val eventHook = registeredEvents[eventClass] ?:
+        val eventHook = registeredEvents.remove(eventClass) ?:
             throw IllegalArgumentException("No EventHook for event: $eventClass")
 
         EventManager.unregisterEventHook(eventClass.java, eventHook)
+        coalescedStreams.remove(eventClass.java)
     }
 
-    private fun writeToSockets(event: Event) = withScope {
-        data class WSEventData(val name: String, val event: JsonElement)
+    fun statistics(): Map<String, EventStatistics> = statistics
 
-        val json = runCatching {
-            val webSocketAnnotation = event::class.java.getAnnotation(WebSocketEvent::class.java)!!
-            interopGson.toJson(
-                WSEventData(
-                    name = event::class.eventName,
-                    event = webSocketAnnotation.serializer.gson.toJsonTree(event)
-                )
-            )
+    private fun writeToSockets(event: Event) {
+        val webSocketAnnotation = event::class.java.getAnnotation(WebSocketEvent::class.java)!!
+
+        if (webSocketAnnotation.coalesce) {
+            coalescedStreams.computeIfAbsent(event.javaClass) { CoalescedStream(webSocketAnnotation) }
+                .pending.set(event)
+        } else {
+            withScope {
+                val json = serialize(event, webSocketAnnotation) ?: return@withScope
+                broadcast(event::class.eventName, interopGson.toJson(WSEventData(event::class.eventName, json)))
+            }
+        }
+    }
+
+    @Suppress("unused")
+    private val flushHandler = handler<GameRenderEvent> {
+        val now = System.currentTimeMillis()
+        val interval = 1000L / maxCoalescedRate
+
+        for (stream in coalescedStreams.values) {
+            if (stream.pending.get() == null || now - stream.lastFlush < interval) {
+                continue
+            }
+
+            // A single flush per stream at a time keeps the deltas in order
+            if (stream.flushing.compareAndSet(false, true)) {
+                stream.lastFlush = now
+                withScope {
+                    try {
+                        flush(stream, now)
+                    } finally {
+                        stream.flushing.set(false)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun flush(stream: CoalescedStream, now: Long) {
+        val event = stream.pending.getAndSet(null) ?: return
+        val name = event::class.eventName
+        val json = serialize(event, stream.annotation) ?: return
+        val lastSent = stream.lastSent
+
+        // Sockets connected later need the whole state from time to time
+        val keyframe = lastSent == null || now - stream.lastKeyframe >= KEYFRAME_INTERVAL
+
+        // Nothing has changed since the last message and no keyframe is due
+        if (!keyframe && json == lastSent) {
+            return
+        }
+
+        val message = if (!deltaEncoding || keyframe || json !is JsonObject || lastSent !is JsonObject) {
+            stream.lastKeyframe = now
+            interopGson.toJson(WSEventData(name, json))
+        } else {
+            interopGson.toJson(WSEventDelta(name, delta(lastSent, json)))
+        }
+
+        stream.lastSent = json
+        broadcast(name, message)
+    }
+
+    private fun serialize(event: Event, webSocketAnnotation: WebSocketEvent): JsonElement? {
+        val startTime = System.nanoTime()
+
+        return runCatching {
+            webSocketAnnotation.serializer.gson.toJsonTree(event)
+        }.onSuccess {
+            statisticsOf(event::class.eventName).serializationNanos.addAndGet(System.nanoTime() - startTime)
         }.onFailure {
             logger.error("Failed to serialize event $event", it)
-        }.getOrNull() ?: return@withScope
+        }.getOrNull()
+    }
+
+    private fun broadcast(name: String, json: String) {
+        statisticsOf(name).apply {
+            messages.incrementAndGet()
+            bytes.addAndGet(Utf8.encodedLength(json).toLong())
+        }
 
         httpServer.webSocketController.broadcast(json) { channelHandlerContext, t ->
             logger.error("WebSocket event broadcast failed", t)
         }
     }
 
+    private fun statisticsOf(name: String) = statistics.computeIfAbsent(name) { EventStatistics() }
+
+    @Suppress("unused")
+    private val metricsHandler = handler<GameTickEvent> {
+        if (!ModuleDebug.running) {
+            return@handler
+        }
+
+        for ((name, eventStatistics) in statistics) {
+            ModuleDebug.debugParameter(
+                this,
+                "WebSocket $name",
+                "${eventStatistics.messages.get()} msgs, ${eventStatistics.bytes.get() / 1024} KiB, " +
+                    "${eventStatistics.serializationNanos.get() / 1_000_000} ms"
+            )
+        }
+    }
+
+    private data class WSEventData(val name: String, val event: JsonElement)
+
+    private data class WSEventDelta(val name: String, val delta: JsonElement)
+
+    private class CoalescedStream(val annotation: WebSocketEvent) {
+        /**
+         * The latest event which has not been sent yet
+         */
+        val pending = AtomicReference<Event?>()
+        val flushing = AtomicBoolean(false)
+
+        @Volatile
+        var lastFlush = 0L
+        @Volatile
+        var lastKeyframe = 0L
+
+        /**
+         * The state the browser has, null if it has to receive the whole state next time
+         */
+        @Volatile
+        var lastSent: JsonElement? = null
+    }
+
+    /**
+     * Totals since the listener has been created
+     */
+    class EventStatistics {
+        val messages = AtomicLong()
+        val bytes = AtomicLong()
+        val serializationNanos = AtomicLong()
+    }
+
+    companion object {
+
+        const val DEFAULT_MAX_COALESCED_RATE = 30
+        const val MAX_COALESCED_RATE = 240
+
+        /**
+         * Delta encoding still sends the whole state this often in milliseconds
+         */
+        private const val KEYFRAME_INTERVAL = 1000L
+
+        /**
+         * Fields of [current] which differ from [previous], removed fields are null.
+         * Nested objects are compared recursively, everything else is replaced as a whole.
+         */
+        internal fun delta(previous: JsonObject, current: JsonObject): JsonObject {
+            val delta = JsonObject()
 
+            for ((key, value) in current.entrySet()) {
+                val previousValue = previous.get(key)
+
+                if (value == previousValue) {
+                    continue
+                }
+
+                delta.add(key, if (value is JsonObject && previousValue is JsonObject) {
+                    delta(previousValue, value)
+                } else {
+                    value
+                })
+            }
+
+            for (key in previous.keySet()) {
+                if (!current.has(key)) {
+                    delta.add(key, JsonNull.INSTANCE)
+                }
+            }
+
+            return delta
+        }
+
+    }
 
 }
@@ -27,6 +27,11 @@ import net.ccbluex.liquidbounce.config.gson.GsonInstance
  * propagation over WebSocket connections.
  */
 annotation class WebSocketEvent(
-    val serializer: GsonInstance = GsonInstance.INTEROP
+    val serializer: GsonInstance = GsonInstance.INTEROP,
+    /**
+     * Only the latest state matters for this event, so it may be coalesced by [SocketEventListener].
+     * Intermediate events are dropped and at most the latest one is sent per frame.
+     */
+    val coalesce: Boolean = false
 )
 
@@ -34,6 +34,8 @@ internal fun registerInteropFunctions(node: Node) = node.withPath("/api/v1/clien
     post("/exit", ::postExit)
     get("/window", ::getWindowInfo)
     post("/browse", ::postBrowse)
+    get("/eventStream", ::getEventStream)
+    put("/eventStream", ::putEventStream)
 
     // LocalStorage Functions
     get("/localStorage/all", ::getAllLocalStorage)
@@ -68,6 +70,14 @@ internal fun registerInteropFunctions(node: Node) = node.withPath("/api/v1/clien
     // Component Functions
     get("/components", ::getComponents)
 
+    // Profiler Functions
+    get("/profiler", ::getProfiler).apply {
+        post("/start", ::postStartProfiler)
+        post("/stop", ::postStopProfiler)
+        post("/reset", ::postResetProfiler)
+        get("/configWrites", ::getConfigWrites)
+    }
+
     // Session Functions
     get("/session", ::getSessionInfo)
     get("/location", ::getLocationInfo)
@@ -161,6 +171,8 @@ internal fun registerInteropFunctions(node: Node) = node.withPath("/api/v1/clien
     // Texture Functions
     get("/resource", ::getResource).apply {
         get("/itemTexture", ::getItemTexture)
+        get("/itemAtlas", ::getItemAtlas)
+        get("/itemAtlasMap", ::getItemAtlasMap)
         get("/skin", ::getSkin)
     }
 
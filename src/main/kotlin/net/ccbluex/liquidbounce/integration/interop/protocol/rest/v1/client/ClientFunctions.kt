@@ -23,6 +23,7 @@ import com.google.gson.JsonObject
 import io.netty.handler.codec.http.FullHttpResponse
 import net.ccbluex.liquidbounce.LiquidBounce
 import net.ccbluex.liquidbounce.api.services.client.ClientUpdate.update
+import net.ccbluex.liquidbounce.integration.interop.ClientInteropServer
 import net.ccbluex.liquidbounce.utils.client.inGame
 import net.ccbluex.liquidbounce.utils.client.mc
 import net.ccbluex.liquidbounce.utils.client.usesViaFabricPlus
@@ -98,6 +99,37 @@ fun postBrowse(requestObject: RequestObject): FullHttpResponse {
     return httpOk(JsonObject())
 }
 
+// GET /api/v1/client/eventStream
+@Suppress("UNUSED_PARAMETER")
+fun getEventStream(requestObject: RequestObject) = httpOk(eventStreamInfo())
+
+// PUT /api/v1/client/eventStream
+fun putEventStream(requestObject: RequestObject): FullHttpResponse {
+    val jsonObj = requestObject.asJson<JsonObject>()
+    val socketEventHandler = ClientInteropServer.socketEventHandler
+
+    jsonObj["maxRate"]?.asInt?.let { socketEventHandler.maxCoalescedRate = it }
+    jsonObj["delta"]?.asBoolean?.let { socketEventHandler.deltaEncoding = it }
+
+    return httpOk(eventStreamInfo())
+}
+
+private fun eventStreamInfo() = JsonObject().apply {
+    val socketEventHandler = ClientInteropServer.socketEventHandler
+
+    addProperty("maxRate", socketEventHandler.maxCoalescedRate)
+    addProperty("delta", socketEventHandler.deltaEncoding)
+    add("statistics", JsonObject().apply {
+        for ((name, statistics) in socketEventHandler.statistics()) {
+            add(name, JsonObject().apply {
+                addProperty("messages", statistics.messages.get())
+                addProperty("bytes", statistics.bytes.get())
+                addProperty("serializationNanos", statistics.serializationNanos.get())
+            })
+        }
+    })
+}
+
 private val POSSIBLE_URL_TARGETS: Map<String, URI> = run {
     val properties = Properties()
 
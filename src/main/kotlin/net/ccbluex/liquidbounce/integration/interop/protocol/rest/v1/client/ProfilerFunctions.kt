@@ -0,0 +1,103 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+package net.ccbluex.liquidbounce.integration.interop.protocol.rest.v1.client
+
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
+import io.netty.handler.codec.http.FullHttpResponse
+import net.ccbluex.liquidbounce.config.ConfigWriter
+import net.ccbluex.liquidbounce.config.gson.util.emptyJsonObject
+import net.ccbluex.liquidbounce.event.EventProfiler
+import net.ccbluex.netty.http.model.RequestObject
+import net.ccbluex.netty.http.util.httpBadRequest
+import net.ccbluex.netty.http.util.httpOk
+
+private val PROFILE_ORDER = mapOf<String, (EventProfiler.HookSnapshot) -> Long>(
+    "total" to { it.totalNanos },
+    "average" to { it.averageNanos },
+    "max" to { it.maxNanos },
+    "invocations" to { it.invocations },
+    "allocations" to { it.allocatedBytes }
+)
+
+// GET /api/v1/client/profiler
+fun getProfiler(requestObject: RequestObject): FullHttpResponse {
+    val sort = requestObject.queryParams["sort"] ?: "total"
+    val selector = PROFILE_ORDER[sort] ?: return httpBadRequest("Unknown sort $sort")
+    val limit = requestObject.queryParams["limit"]?.toIntOrNull() ?: Int.MAX_VALUE
+
+    if (limit < 0) {
+        return httpBadRequest("Limit must not be negative")
+    }
+
+    return httpOk(JsonObject().apply {
+        addProperty("enabled", EventProfiler.enabled)
+        add("hooks", JsonArray().apply {
+            EventProfiler.snapshots().sortedByDescending(selector).take(limit).forEach { profile ->
+                add(JsonObject().apply {
+                    addProperty("owner", profile.ownerName)
+                    addProperty("event", profile.eventClass.simpleName)
+                    addProperty("invocations", profile.invocations)
+                    addProperty("totalNanos", profile.totalNanos)
+                    addProperty("averageNanos", profile.averageNanos)
+                    addProperty("maxNanos", profile.maxNanos)
+                    addProperty("p50Nanos", profile.p50Nanos)
+                    addProperty("p99Nanos", profile.p99Nanos)
+                    addProperty("allocatedBytes", profile.allocatedBytes)
+                })
+            }
+        })
+    })
+}
+
+// POST /api/v1/client/profiler/start
+@Suppress("UNUSED_PARAMETER")
+fun postStartProfiler(requestObject: RequestObject): FullHttpResponse {
+    EventProfiler.enabled = true
+    return httpOk(emptyJsonObject())
+}
+
+// POST /api/v1/client/profiler/stop
+@Suppress("UNUSED_PARAMETER")
+fun postStopProfiler(requestObject: RequestObject): FullHttpResponse {
+    EventProfiler.enabled = false
+    return httpOk(emptyJsonObject())
+}
+
+// POST /api/v1/client/profiler/reset
+@Suppress("UNUSED_PARAMETER")
+fun postResetProfiler(requestObject: RequestObject): FullHttpResponse {
+    EventProfiler.reset()
+    return httpOk(emptyJsonObject())
+}
+
+// GET /api/v1/client/profiler/configWrites
+@Suppress("UNUSED_PARAMETER")
+fun getConfigWrites(requestObject: RequestObject): FullHttpResponse {
+    val statistics = ConfigWriter.statistics
+
+    return httpOk(JsonObject().apply {
+        addProperty("pendingWrites", statistics.pendingWrites)
+        addProperty("writes", statistics.writes)
+        addProperty("totalWriteNanos", statistics.totalWriteNanos)
+        addProperty("averageWriteNanos", statistics.totalWriteNanos / statistics.writes.coerceAtLeast(1))
+        addProperty("maxWriteNanos", statistics.maxWriteNanos)
+    })
+}
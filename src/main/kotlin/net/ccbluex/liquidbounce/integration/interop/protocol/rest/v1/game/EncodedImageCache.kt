@@ -0,0 +1,119 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package net.ccbluex.liquidbounce.integration.interop.protocol.rest.v1.game
+
+import io.netty.buffer.Unpooled
+import io.netty.handler.codec.http.DefaultFullHttpResponse
+import io.netty.handler.codec.http.FullHttpResponse
+import io.netty.handler.codec.http.HttpHeaderNames
+import io.netty.handler.codec.http.HttpResponseStatus
+import io.netty.handler.codec.http.HttpVersion
+import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.DisconnectEvent
+import net.ccbluex.liquidbounce.event.events.ResourceReloadEvent
+import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.netty.http.model.RequestObject
+import net.minecraft.util.Util
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32
+
+/**
+ * Encoded images served by the texture endpoints, so every image is only encoded once.
+ *
+ * Images are encoded lazily on the Minecraft worker pool. Concurrent requests for the same key
+ * wait for the same encoding instead of encoding the image again.
+ */
+internal object EncodedImageCache : EventListener {
+
+    const val ITEM_PREFIX = "item:"
+    const val ATLAS_PREFIX = "atlas:"
+    const val SKIN_PREFIX = "skin:"
+
+    private val entries = ConcurrentHashMap<String, CompletableFuture<EncodedImage>>()
+
+    /**
+     * Returns the cached image of [key] or encodes it with [encoder].
+     * Failed encodings are not cached, so they are retried on the next request.
+     */
+    fun getOrEncode(key: String, encoder: () -> ByteArray): EncodedImage {
+        val future = entries.computeIfAbsent(key) {
+            CompletableFuture.supplyAsync({ EncodedImage(encoder()) }, Util.getMainWorkerExecutor())
+        }
+
+        return try {
+            future.join()
+        } catch (e: CompletionException) {
+            entries.remove(key, future)
+            throw e.cause ?: e
+        }
+    }
+
+    private fun invalidate(prefix: String) {
+        entries.keys.removeIf { it.startsWith(prefix) }
+    }
+
+    @Suppress("unused")
+    private val resourceReloadHandler = handler<ResourceReloadEvent> {
+        entries.clear()
+    }
+
+    @Suppress("unused")
+    private val disconnectHandler = handler<DisconnectEvent> {
+        invalidate(SKIN_PREFIX)
+    }
+
+}
+
+internal class EncodedImage(val bytes: ByteArray) {
+
+    val etag = "\"${CRC32().apply { update(bytes) }.value.toString(16)}-${bytes.size.toString(16)}\""
+
+}
+
+/**
+ * Responds with [image] or with 304 Not Modified if the browser already has it.
+ *
+ * Browsers have to revalidate, as the texture might change, e.g. after a resource pack has been loaded.
+ */
+internal fun httpCachedImage(requestObject: RequestObject, image: EncodedImage): FullHttpResponse {
+    val ifNoneMatch = requestObject.headers.entries
+        .firstOrNull { (name, _) -> name.equals(HttpHeaderNames.IF_NONE_MATCH.toString(), ignoreCase = true) }
+        ?.value
+    val notModified = ifNoneMatch?.split(',')?.any { it.trim() == image.etag || it.trim() == "*" } == true
+
+    val response = if (notModified) {
+        DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED)
+    } else {
+        DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(image.bytes))
+    }
+
+    response.headers().apply {
+        set(HttpHeaderNames.CONTENT_TYPE, "image/png")
+        set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes())
+        set(HttpHeaderNames.ETAG, image.etag)
+        set(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+    }
+
+    return response
+}
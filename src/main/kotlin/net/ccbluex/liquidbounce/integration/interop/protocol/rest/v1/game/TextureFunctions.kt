@@ -21,6 +21,7 @@
 
 package net.ccbluex.liquidbounce.integration.interop.protocol.rest.v1.game
 
+import com.google.gson.JsonObject
 import net.ccbluex.liquidbounce.render.ui.ItemImageAtlas
 import net.ccbluex.liquidbounce.utils.client.mc
 import net.ccbluex.liquidbounce.utils.client.world
@@ -28,12 +29,14 @@ import net.ccbluex.netty.http.model.RequestObject
 import net.ccbluex.netty.http.util.httpBadRequest
 import net.ccbluex.netty.http.util.httpFileStream
 import net.ccbluex.netty.http.util.httpInternalServerError
+import net.ccbluex.netty.http.util.httpOk
 import net.minecraft.client.texture.NativeImageBackedTexture
 import net.minecraft.client.util.DefaultSkinHelper
 import net.minecraft.registry.Registries
 import net.minecraft.registry.RegistryKey
 import net.minecraft.registry.RegistryKeys
 import net.minecraft.util.Identifier
+import java.awt.image.BufferedImage
 import java.util.*
 import javax.imageio.ImageIO
 import kotlin.jvm.optionals.getOrNull
@@ -54,25 +57,70 @@ fun getResource(requestObject: RequestObject) = run {
 // GET /api/v1/client/itemTexture
 @Suppress("UNUSED_PARAMETER")
 fun getItemTexture(requestObject: RequestObject) = run {
-    if (!ItemImageAtlas.isAtlasAvailable) {
-        return@run httpInternalServerError("Item atlas not available yet")
-    }
+    val atlas = ItemImageAtlas.snapshot
+        ?: return@run httpInternalServerError("Item atlas not available yet")
 
     val identifier = requestObject.queryParams["id"]
         ?: return@run httpBadRequest("Missing identifier parameter")
     val minecraftIdentifier = runCatching { Identifier.of(identifier) }.getOrNull()
         ?: return@run httpBadRequest("Invalid identifier")
 
-    val alternativeIdentifier = ItemImageAtlas.resolveAliasIfPresent(minecraftIdentifier)
+    val alternativeIdentifier = atlas.resolveAliasIfPresent(minecraftIdentifier)
 
     val of = RegistryKey.of(RegistryKeys.ITEM, alternativeIdentifier)
 
-    val image = Registries.ITEM.get(of)?.let(ItemImageAtlas::getItemImage)
+    val image = Registries.ITEM.get(of)?.let(atlas::getItemImage)
         ?: return@run httpBadRequest("Item image not found")
 
-    val buffer = okio.Buffer()
-    ImageIO.write(image, "PNG", buffer.outputStream())
-    httpFileStream(buffer.inputStream())
+    val key = "${EncodedImageCache.ITEM_PREFIX}${atlas.generation}:$alternativeIdentifier"
+    val encoded = EncodedImageCache.getOrEncode(key) {
+        image.encodePng()
+    }
+
+    httpCachedImage(requestObject, encoded)
+}
+
+// GET /api/v1/client/itemAtlas
+@Suppress("UNUSED_PARAMETER")
+fun getItemAtlas(requestObject: RequestObject) = run {
+    val atlas = ItemImageAtlas.snapshot
+        ?: return@run httpInternalServerError("Item atlas not available yet")
+
+    val encoded = EncodedImageCache.getOrEncode("${EncodedImageCache.ATLAS_PREFIX}${atlas.generation}") {
+        atlas.image.encodePng()
+    }
+
+    httpCachedImage(requestObject, encoded)
+}
+
+// GET /api/v1/client/itemAtlasMap
+@Suppress("UNUSED_PARAMETER")
+fun getItemAtlasMap(requestObject: RequestObject) = run {
+    val atlas = ItemImageAtlas.snapshot
+        ?: return@run httpInternalServerError("Item atlas not available yet")
+
+    httpOk(JsonObject().apply {
+        addProperty("generation", atlas.generation)
+        addProperty("width", atlas.image.width)
+        addProperty("height", atlas.image.height)
+        add("items", JsonObject().apply {
+            for ((item, region) in atlas.map) {
+                val (start, end) = region
+
+                add(Registries.ITEM.getId(item).toString(), JsonObject().apply {
+                    addProperty("x", start.x)
+                    addProperty("y", start.y)
+                    addProperty("width", end.x - start.x)
+                    addProperty("height", end.y - start.y)
+                })
+            }
+        })
+        add("aliases", JsonObject().apply {
+            for ((from, to) in atlas.aliasMap) {
+                addProperty(from.toString(), to.toString())
+            }
+        })
+    })
 }
 
 // GET /api/v1/client/skin
@@ -83,16 +131,31 @@ fun getSkin(requestObject: RequestObject) = run {
         ?: DefaultSkinHelper.getSkinTextures(uuid)
     val texture = mc.textureManager.getTexture(skinTextures.texture)
 
-    if (texture is NativeImageBackedTexture) {
-        val buffer = okio.Buffer()
-        texture.image?.write(buffer) ?: return@run httpInternalServerError("Texture is not cached yet")
-        httpFileStream(buffer.inputStream())
+    // Skin texture identifiers are derived from the skin itself, so they change together with the skin
+    val key = "${EncodedImageCache.SKIN_PREFIX}${skinTextures.texture}"
+
+    val encoded = if (texture is NativeImageBackedTexture) {
+        val image = texture.image ?: return@run httpInternalServerError("Texture is not cached yet")
+
+        EncodedImageCache.getOrEncode(key) {
+            val buffer = okio.Buffer()
+            image.write(buffer)
+            buffer.readByteArray()
+        }
     } else {
         val resource = mc.resourceManager.getResource(skinTextures.texture)
             .getOrNull() ?: return@run httpInternalServerError("Texture not found")
 
-        resource.inputStream.use {
-            httpFileStream(it)
+        EncodedImageCache.getOrEncode(key) {
+            resource.inputStream.use { it.readAllBytes() }
         }
     }
+
+    httpCachedImage(requestObject, encoded)
+}
+
+private fun BufferedImage.encodePng(): ByteArray {
+    val buffer = okio.Buffer()
+    ImageIO.write(this, "PNG", buffer.outputStream())
+    return buffer.readByteArray()
 }
@@ -20,39 +20,152 @@
  */
 package net.ccbluex.liquidbounce.integration.theme.component.types.minimap
 
+import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.GameTickEvent
+import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.utils.block.ChunkScanner
 import net.ccbluex.liquidbounce.utils.client.logger
 import net.ccbluex.liquidbounce.utils.client.mc
 import net.ccbluex.liquidbounce.utils.math.Vec2i
+import net.minecraft.block.Block
 import net.minecraft.block.BlockState
 import net.minecraft.block.MapColor.Brightness
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.ChunkPos
 import net.minecraft.util.math.MathHelper
+import net.minecraft.world.Heightmap
+import net.minecraft.world.World
+import net.minecraft.world.chunk.Chunk
 import java.awt.Color
+import java.util.BitSet
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.PI
+import kotlin.math.abs
 import kotlin.math.roundToInt
 import kotlin.math.sin
 
-object ChunkRenderer {
+object ChunkRenderer : EventListener {
     private val textureAtlasManager = MinimapTextureAtlasManager()
     private val heightmapManager = MinimapHeightmapManager()
 
     val SUN_DIRECTION = Vec2i(2, 1)
 
+    /**
+     * Chunks which are not loaded, but shown from [MinimapTileStore]
+     */
+    private val storedOnlyChunks = ConcurrentHashMap.newKeySet<ChunkPos>()
+
+    /**
+     * Chunks without a stored tile, so the store is not asked every frame
+     */
+    private val missingTiles = ConcurrentHashMap.newKeySet<ChunkPos>()
+
+    /**
+     * Columns changed by block updates, drawn once per tick, indexed by `(z shl 4) or x`
+     */
+    private val pendingColumns = ConcurrentHashMap<ChunkPos, BitSet>()
+
+    /**
+     * Stored tiles are kept this many chunks outside the rendered area before their atlas space is freed
+     */
+    private const val STORED_TILE_MARGIN = 2
+
     fun unloadEverything() {
         heightmapManager.unloadAllChunks()
         textureAtlasManager.deallocateAll()
+        pendingColumns.clear()
+        storedOnlyChunks.clear()
+        missingTiles.clear()
+        MinimapTileStore.close()
     }
 
     fun getAtlasPosition(chunkPos: ChunkPos): MinimapTextureAtlasManager.AtlasPosition {
+        textureAtlasManager.get(chunkPos)?.let { return it }
+
+        if (MinimapComponent.persistent && chunkPos !in missingTiles) {
+            loadStoredTile(chunkPos)
+        }
+
         return textureAtlasManager.getOrNotLoadedTexture(chunkPos)
     }
 
-    fun prepareRendering(): Int {
+    /**
+     * Shows the stored tile of a chunk which has not been loaded (yet)
+     */
+    private fun loadStoredTile(chunkPos: ChunkPos) {
+        val world = mc.world ?: return
+        val tile = MinimapTileStore.Tile()
+
+        if (!MinimapTileStore.read(world, chunkPos, tile)) {
+            missingTiles.add(chunkPos)
+            return
+        }
+
+        storedOnlyChunks.add(chunkPos)
+        writeTile(chunkPos, tile)
+    }
+
+    private fun writeTile(chunkPos: ChunkPos, tile: MinimapTileStore.Tile) {
+        textureAtlasManager.editChunk(chunkPos) { texture, atlasPosition ->
+            for (offX in 0..15) {
+                for (offZ in 0..15) {
+                    val (texX, texY) = atlasPosition.getPosOnAtlas(offX, offZ)
+
+                    texture.image!!.setColorArgb(texX, texY, tile.colors[(offZ shl 4) or offX])
+                }
+            }
+        }
+    }
+
+    /**
+     * Uploads texture changes and frees the atlas space of stored tiles far away from [center]
+     *
+     * @return the GLid of the atlas texture
+     */
+    fun prepareRendering(center: ChunkPos, radius: Int): Int {
+        val maxDistance = radius + STORED_TILE_MARGIN
+
+        storedOnlyChunks.removeIf { chunkPos ->
+            val far = abs(chunkPos.x - center.x) > maxDistance || abs(chunkPos.z - center.z) > maxDistance
+
+            if (far) {
+                textureAtlasManager.deallocate(chunkPos)
+            }
+
+            far
+        }
+        missingTiles.removeIf { abs(it.x - center.x) > maxDistance || abs(it.z - center.z) > maxDistance }
+
         return textureAtlasManager.prepareRendering()
     }
 
+    @Suppress("unused")
+    private val tickHandler = handler<GameTickEvent> {
+        MinimapChunkUpdateSubscriber.flushPendingColumns()
+    }
+
+    /**
+     * Identifies the surface of a chunk, a stored tile with the same fingerprint can be shown as it is.
+     * Hashes the height and the state of the top block of every column, the surface heightmap is sent
+     * by the server, so this only reads 256 blocks.
+     */
+    private fun fingerprint(chunk: Chunk): Int {
+        val heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE)
+        val pos = BlockPos.Mutable()
+        var hash = 1
+
+        for (z in 0..15) {
+            for (x in 0..15) {
+                val y = heightmap.get(x, z) - 1
+                val state = chunk.getBlockState(pos.set(chunk.pos.startX + x, y, chunk.pos.startZ + z))
+
+                hash = 31 * (31 * hash + y) + Block.getRawIdFromState(state)
+            }
+        }
+
+        return hash
+    }
+
     object MinimapChunkUpdateSubscriber : ChunkScanner.BlockChangeSubscriber {
         override val shouldCallRecordBlockOnChunkUpdate: Boolean
             get() = false
@@ -64,30 +177,96 @@ object ChunkRenderer {
         ) {
             val heightmapUpdated = heightmapManager.updatePosition(pos, state)
 
-            val positionsToUpdate =
-                if (heightmapUpdated) {
-                    arrayOf(
-                        pos,
-                        pos.add(1, 0, 0),
-                        pos.add(-1, 0, 0),
-                        pos.add(0, 0, 1),
-                        pos.add(0, 0, -1),
-                    )
-                } else {
-                    arrayOf(pos)
+            markColumn(pos.x, pos.z)
+
+            // The shading of the neighbours depends on the height
+            if (heightmapUpdated) {
+                markColumn(pos.x + 1, pos.z)
+                markColumn(pos.x - 1, pos.z)
+                markColumn(pos.x, pos.z + 1)
+                markColumn(pos.x, pos.z - 1)
+            }
+        }
+
+        /**
+         * Queues the column at [x], [z] to be redrawn on the next tick
+         */
+        private fun markColumn(x: Int, z: Int) {
+            pendingColumns.compute(ChunkPos(x shr 4, z shr 4)) { _, columns ->
+                (columns ?: BitSet(16 * 16)).apply { set(((z and 15) shl 4) or (x and 15)) }
+            }
+        }
+
+        /**
+         * Redraws the queued columns, each chunk is edited and marked dirty once
+         */
+        fun flushPendingColumns() {
+            val world = mc.world ?: return
+
+            for (chunkPos in pendingColumns.keys) {
+                val columns = pendingColumns.remove(chunkPos) ?: continue
+
+                // Unloaded neighbours would be drawn as air
+                if (!world.chunkManager.isChunkLoaded(chunkPos.x, chunkPos.z)) {
+                    continue
                 }
 
-            for (posToUpdate in positionsToUpdate) {
-                val color = getColor(posToUpdate.x, posToUpdate.z)
+                val fingerprint = persistenceFingerprint(world, chunkPos)
+
+                textureAtlasManager.editChunk(chunkPos) { texture, atlasPosition ->
+                    var column = columns.nextSetBit(0)
+
+                    while (column >= 0) {
+                        val offX = column and 15
+                        val offZ = column shr 4
+                        val (texX, texY) = atlasPosition.getPosOnAtlas(offX, offZ)
+
+                        val color = getColor(offX or chunkPos.startX, offZ or chunkPos.startZ)
 
-                textureAtlasManager.editChunk(ChunkPos(posToUpdate)) { texture, atlasPosition ->
-                    val (x, y) = atlasPosition.getPosOnAtlas(posToUpdate.x and 15, posToUpdate.z and 15)
+                        texture.image!!.setColorArgb(texX, texY, color)
+                        persistColumn(world, chunkPos, offX, offZ, color, fingerprint)
 
-                    texture.image!!.setColorArgb(x, y, color)
+                        column = columns.nextSetBit(column + 1)
+                    }
                 }
             }
         }
 
+        /**
+         * Fingerprint of the chunk for [MinimapTileStore.writeColumn], null if tiles are not persisted
+         */
+        private fun persistenceFingerprint(world: World, chunkPos: ChunkPos): Int? {
+            if (!MinimapComponent.persistent) {
+                return null
+            }
+
+            return fingerprint(world.getChunk(chunkPos.x, chunkPos.z))
+        }
+
+        @Suppress("LongParameterList")
+        private fun persistColumn(
+            world: World,
+            chunkPos: ChunkPos,
+            offX: Int,
+            offZ: Int,
+            color: Int,
+            fingerprint: Int?
+        ) {
+            if (fingerprint == null) {
+                return
+            }
+
+            MinimapTileStore.writeColumn(
+                world,
+                chunkPos,
+                offX,
+                offZ,
+                color,
+                heightmapManager.getHeight(offX or chunkPos.startX, offZ or chunkPos.startZ),
+                fingerprint
+            )
+        }
+
         private val offsetsToCheck = arrayOf(
             Vec2i(-1, 0),
             Vec2i(1, 0),
@@ -153,6 +332,9 @@ object ChunkRenderer {
             z: Int,
         ) {
             val chunkPos = ChunkPos(x, z)
+            // The world of this update, the client may already be in another one
+            val world = mc.world ?: return
+            val chunk = world.getChunk(x, z)
 
             val chunkBordersToUpdate =
                 arrayOf(
@@ -162,21 +344,21 @@ object ChunkRenderer {
                     Triple(ChunkPos(x, z - 1), Vec2i(0, 15), Vec2i(15, 15)),
                 )
 
-            heightmapManager.updateChunk(chunkPos)
-
-            textureAtlasManager.editChunk(chunkPos) { texture, atlasPosition ->
-                for (offX in 0..15) {
-                    for (offZ in 0..15) {
-                        val (texX, texY) = atlasPosition.getPosOnAtlas(offX, offZ)
-
-                        val color = getColor(offX or (x shl 4), offZ or (z shl 4))
+            storedOnlyChunks.remove(chunkPos)
+            missingTiles.remove(chunkPos)
 
-                        texture.image!!.setColorArgb(texX, texY, color)
-                    }
-                }
+            if (!restoreChunk(world, chunk, chunkPos)) {
+                renderChunk(world, chunk, chunkPos)
             }
 
             for ((otherPos, from, to) in chunkBordersToUpdate) {
+                // Unloaded neighbours would be drawn as air, their stored tile is more accurate
+                if (!world.chunkManager.isChunkLoaded(otherPos.x, otherPos.z)) {
+                    continue
+                }
+
+                val fingerprint = persistenceFingerprint(world, otherPos)
+
                 textureAtlasManager.editChunk(otherPos) { texture, atlasPosition ->
                     for (offX in from.x..to.x) {
                         for (offZ in from.y..to.y) {
@@ -185,12 +367,60 @@ object ChunkRenderer {
                             val color = getColor(offX or otherPos.startX, offZ or otherPos.startZ)
 
                             texture.image!!.setColorArgb(texX, texY, color)
+                            persistColumn(world, otherPos, offX, offZ, color, fingerprint)
                         }
                     }
                 }
             }
         }
 
+        /**
+         * Shows the stored tile of [chunk] if the chunk has not changed since it was stored
+         *
+         * @return false if the chunk has to be rendered
+         */
+        private fun restoreChunk(world: World, chunk: Chunk, chunkPos: ChunkPos): Boolean {
+            if (!MinimapComponent.persistent) {
+                return false
+            }
+
+            val tile = MinimapTileStore.Tile()
+
+            if (!MinimapTileStore.read(world, chunkPos, tile) || tile.fingerprint != fingerprint(chunk)) {
+                return false
+            }
+
+            heightmapManager.setHeights(chunkPos, tile.heights)
+            writeTile(chunkPos, tile)
+
+            return true
+        }
+
+        private fun renderChunk(world: World, chunk: Chunk, chunkPos: ChunkPos) {
+            val tile = MinimapTileStore.Tile()
+
+            heightmapManager.updateChunk(chunkPos)
+
+            textureAtlasManager.editChunk(chunkPos) { texture, atlasPosition ->
+                for (offX in 0..15) {
+                    for (offZ in 0..15) {
+                        val (texX, texY) = atlasPosition.getPosOnAtlas(offX, offZ)
+
+                        val color = getColor(offX or chunkPos.startX, offZ or chunkPos.startZ)
+
+                        texture.image!!.setColorArgb(texX, texY, color)
+                        tile.colors[(offZ shl 4) or offX] = color
+                    }
+                }
+            }
+
+            if (MinimapComponent.persistent) {
+                tile.fingerprint = fingerprint(chunk)
+                heightmapManager.copyHeights(chunkPos, tile.heights)
+                MinimapTileStore.write(world, chunkPos, tile)
+            }
+        }
+
         override fun clearChunk(
             x: Int,
             z: Int,
@@ -198,7 +428,14 @@ object ChunkRenderer {
             val chunkPos = ChunkPos(x, z)
 
             heightmapManager.unloadChunk(chunkPos)
-            textureAtlasManager.deallocate(chunkPos)
+            pendingColumns.remove(chunkPos)
+
+            // Keep showing the chunk until it is out of sight
+            if (MinimapComponent.persistent) {
+                storedOnlyChunks.add(chunkPos)
+            } else {
+                textureAtlasManager.deallocate(chunkPos)
+            }
         }
 
         override fun clearAllChunks() {
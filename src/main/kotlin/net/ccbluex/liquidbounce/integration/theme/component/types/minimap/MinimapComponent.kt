@@ -58,6 +58,11 @@ object MinimapComponent : Component("Minimap", true) {
     private val size by int("Size", 96, 1..256)
     private val viewDistance by float("ViewDistance", 3.0F, 1.0F..8.0F)
 
+    /**
+     * Stores explored chunks on disk, see [MinimapTileStore]
+     */
+    val persistent by boolean("Persistent", true)
+
     init {
         ChunkRenderer
         registerComponentListen()
@@ -105,7 +110,7 @@ object MinimapComponent : Component("Minimap", true) {
         matStack.translate(-playerOffX, -playerOffZ, 0.0)
 
         renderEnvironmentForGUI(matStack) {
-            val glId = ChunkRenderer.prepareRendering()
+            val glId = ChunkRenderer.prepareRendering(ChunkPos(baseX, baseZ), chunksToRenderAround)
 
             RenderSystem.bindTexture(glId)
 
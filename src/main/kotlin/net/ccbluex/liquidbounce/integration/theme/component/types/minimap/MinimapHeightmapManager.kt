@@ -44,18 +44,34 @@ class MinimapHeightmapManager {
         return heightmaps.getOrPut(chunkPos, ::HeightmapForChunk)
     }
 
+    /**
+     * Computes the heightmap of a whole chunk. The surface heightmap sent by the server tells where each column
+     * starts, so usually only a single block is checked per column.
+     */
     fun updateChunk(chunkPos: ChunkPos) {
         val chunk = mc.world?.getChunk(chunkPos.x, chunkPos.z) ?: return
+        val surfaceHeightmap = chunk.surfaceHeightmap()
 
         val heightmap = HeightmapForChunk()
 
-        heightmaps[chunkPos] = heightmap
-
         for (x in 0..15) {
             for (z in 0..15) {
-                heightmap.setHeight(x, z, chunk.calculateHeight(x, z))
+                heightmap.setHeight(x, z, chunk.calculateHeight(x, z, surfaceHeightmap))
             }
         }
+
+        heightmaps[chunkPos] = heightmap
+    }
+
+    /**
+     * Replaces the heightmap of [chunkPos] with [heights], indexed by `(z shl 4) or x`
+     */
+    fun setHeights(chunkPos: ChunkPos, heights: IntArray) {
+        heightmaps[chunkPos] = HeightmapForChunk(heights.copyOf())
+    }
+
+    fun copyHeights(chunkPos: ChunkPos, destination: IntArray) {
+        getHeightmap(chunkPos).copyInto(destination)
     }
 
     /**
@@ -107,24 +123,48 @@ class MinimapHeightmapManager {
         }
     }
 
-    private fun Chunk.calculateHeight(x: Int, z: Int, maxY: Int? = null): Int {
-        val maxHeight = (maxY ?: height) - 1
+    /**
+     * Finds the surface of the column at [x], [z] below [maxY] (exclusive).
+     */
+    private fun Chunk.calculateHeight(
+        x: Int,
+        z: Int,
+        surfaceHeightmap: Heightmap? = surfaceHeightmap(),
+        maxY: Int? = null
+    ): Int {
+        val localX = x and 15
+        val localZ = z and 15
 
-        val pos = BlockPos.Mutable(x, maxHeight, z)
+        var fromY = (maxY ?: (topYInclusive + 1)) - 1
+        if (surfaceHeightmap != null) {
+            // Everything above the highest non-air block is air
+            fromY = minOf(fromY, surfaceHeightmap.get(localX, localZ) - 1)
+        }
 
-        try {
-            while (pos.y > bottomY) {
-                val state = getBlockState(pos)
-                if (isSurface(pos, state)) {
-                    return pos.y
+        val pos = BlockPos.Mutable()
+
+        return try {
+            scanColumnTopDown(
+                fromY.coerceAtMost(topYInclusive),
+                bottomY,
+                isSectionEmpty = { sectionY -> getSection(sectionCoordToIndex(sectionY)).isEmpty },
+                isSurface = { y ->
+                    val state = getSection(getSectionIndex(y)).getBlockState(localX, y and 15, localZ)
+
+                    isSurface(pos.set(x, y, z), state)
                 }
-                pos.y--
-            }
+            )
         } catch (e: Exception) {
             logger.warn("Exception in height calculation", e)
+            bottomY
         }
+    }
 
-        return pos.y
+    /**
+     * The surface heightmap is part of the chunk data packet, chunks without it are scanned
+     */
+    private fun Chunk.surfaceHeightmap(): Heightmap? {
+        return this.heightmaps.firstOrNull { (type, _) -> type == Heightmap.Type.WORLD_SURFACE }?.value
     }
 
     private fun Chunk.isSurface(pos: BlockPos, blockState: BlockState): Boolean {
@@ -140,8 +180,37 @@ class MinimapHeightmapManager {
     }
 }
 
-class HeightmapForChunk {
-    private val heightmap = IntArray(16 * 16) { 255 }
+/**
+ * Walks a column from [fromY] down to [bottomY] and returns the first y which [isSurface], or [bottomY].
+ * Sections which [isSectionEmpty] are skipped as a whole.
+ */
+internal inline fun scanColumnTopDown(
+    fromY: Int,
+    bottomY: Int,
+    isSectionEmpty: (sectionY: Int) -> Boolean,
+    isSurface: (y: Int) -> Boolean
+): Int {
+    var y = fromY
+
+    while (y > bottomY) {
+        val sectionY = y shr 4
+
+        if (isSectionEmpty(sectionY)) {
+            y = (sectionY shl 4) - 1
+            continue
+        }
+
+        if (isSurface(y)) {
+            return y
+        }
+
+        y--
+    }
+
+    return bottomY
+}
+
+class HeightmapForChunk(private val heightmap: IntArray = IntArray(16 * 16) { 255 }) {
 
     fun getHeight(
         x: Int,
@@ -157,4 +226,8 @@ class HeightmapForChunk {
     ) {
         heightmap[(z shl 4) or x] = height
     }
+
+    fun copyInto(destination: IntArray) {
+        heightmap.copyInto(destination)
+    }
 }
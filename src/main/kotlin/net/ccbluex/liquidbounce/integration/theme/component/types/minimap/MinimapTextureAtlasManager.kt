@@ -20,10 +20,10 @@
  */
 package net.ccbluex.liquidbounce.integration.theme.component.types.minimap
 
+import net.ccbluex.liquidbounce.render.engine.DirtyRegionUploader
 import net.ccbluex.liquidbounce.render.engine.font.BoundingBox2f
 import net.ccbluex.liquidbounce.render.engine.type.Color4b
 import net.ccbluex.liquidbounce.utils.math.Vec2i
-import net.minecraft.client.texture.NativeImage
 import net.minecraft.client.texture.NativeImageBackedTexture
 import net.minecraft.util.math.ChunkPos
 import java.util.concurrent.ArrayBlockingQueue
@@ -36,11 +36,6 @@ import kotlin.concurrent.write
  */
 private const val ATLAS_SIZE: Int = 64
 
-/**
- * If we need to upload more than this amount of chunks, we upload the whole texture
- */
-private const val FULL_UPLOAD_THRESHOLD: Int = 15
-
 private const val MAX_ATLAS_POSITIONS: Int = ATLAS_SIZE * ATLAS_SIZE - 1
 
 private val NOT_LOADED_ATLAS_POSITION = MinimapTextureAtlasManager.AtlasPosition(0, 0)
@@ -48,13 +43,11 @@ private val NOT_LOADED_ATLAS_POSITION = MinimapTextureAtlasManager.AtlasPosition
 class MinimapTextureAtlasManager {
     private val texture = NativeImageBackedTexture(ATLAS_SIZE * 16, ATLAS_SIZE * 16, false)
     private val availableAtlasPositions: ArrayBlockingQueue<AtlasPosition>
-    private val dirtyAtlasPositions = hashSetOf<AtlasPosition>()
+    private val uploader = DirtyRegionUploader(texture)
     private val chunkPosAtlasPosMap = hashMapOf<ChunkPos, AtlasPosition>()
 
     private val lock = ReentrantReadWriteLock()
 
-    private var allocated = false
-
     init {
         val atlasPositions = ArrayList<AtlasPosition>(MAX_ATLAS_POSITIONS)
         for (x in 0 until ATLAS_SIZE) {
@@ -76,7 +69,8 @@ class MinimapTextureAtlasManager {
             }
         }
 
-        this.dirtyAtlasPositions.add(NOT_LOADED_ATLAS_POSITION)
+        // The first upload has to allocate the texture
+        this.uploader.markAllDirty()
     }
 
     private fun allocate(chunkPos: ChunkPos): AtlasPosition {
@@ -99,7 +93,6 @@ class MinimapTextureAtlasManager {
         lock.write {
             availableAtlasPositions.addAll(chunkPosAtlasPosMap.values)
             chunkPosAtlasPosMap.clear()
-            dirtyAtlasPositions.clear()
         }
     }
 
@@ -122,7 +115,7 @@ class MinimapTextureAtlasManager {
         val atlasPosition = getOrAllocate(chunkPos)
 
         lock.write {
-            dirtyAtlasPositions.add(atlasPosition)
+            uploader.markDirty(atlasPosition.baseXOnAtlas, atlasPosition.baseYOnAtlas, 16, 16)
         }
 
         editor(texture, atlasPosition)
@@ -134,60 +127,13 @@ class MinimapTextureAtlasManager {
      * @return the GLid of the texture
      */
     fun prepareRendering(): Int {
-        lock.read {
-            if (this.dirtyAtlasPositions.isEmpty()) {
-                return this.texture.glId
-            }
-
-            this.texture.bindTexture()
-
-            val dirtyChunks = this.dirtyAtlasPositions.size
-
-            when {
-                !this.allocated || dirtyChunks >= FULL_UPLOAD_THRESHOLD -> uploadFullTexture()
-                else -> uploadOnlyDirtyPositions()
-            }
-        }
-
         lock.write {
-            this.dirtyAtlasPositions.clear()
+            this.uploader.upload()
         }
 
         return this.texture.glId
     }
 
-    private fun uploadFullTexture() {
-        this.texture.upload()
-
-        this.allocated = true
-    }
-
-    private fun uploadOnlyDirtyPositions() {
-        val image = this.texture.image!!
-
-        for (dirtyAtlasPosition in this.dirtyAtlasPositions) {
-            val chunkImage = NativeImage(16, 16, false)
-
-            chunkImage.use {
-                image.copyRect(
-                    chunkImage,
-                    dirtyAtlasPosition.baseXOnAtlas, dirtyAtlasPosition.baseYOnAtlas,
-                    0, 0,
-                    16, 16,
-                    false, false
-                )
-
-                chunkImage.upload(
-                    0,
-                    dirtyAtlasPosition.baseXOnAtlas, dirtyAtlasPosition.baseYOnAtlas,
-                    0, 0,
-                    16, 16,
-                    false
-                )
-            }
-        }
-    }
-
     data class AtlasPosition(private val x: Int, private val y: Int) {
         val baseXOnAtlas: Int = x shl 4
         val baseYOnAtlas: Int = y shl 4
@@ -0,0 +1,269 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package net.ccbluex.liquidbounce.integration.theme.component.types.minimap
+
+import net.ccbluex.liquidbounce.config.ConfigSystem
+import net.ccbluex.liquidbounce.utils.client.logger
+import net.ccbluex.liquidbounce.utils.client.mc
+import net.minecraft.util.WorldSavePath
+import net.minecraft.util.math.ChunkPos
+import net.minecraft.world.World
+import sun.misc.Unsafe
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * On-disk store of minimap tiles, keyed by server and dimension.
+ *
+ * Tiles are kept in memory-mapped region files of 32x32 chunks. A region file starts with one byte per chunk
+ * which marks stored tiles, followed by a fixed-size tile for every chunk: the fingerprint of the chunk, the
+ * colors and the heights of its 256 columns. Reading or writing a tile is a copy from or into the mapping,
+ * the OS writes the pages back.
+ *
+ * The store follows the current world, it switches to another folder when the server or the dimension changes.
+ * Every access names the world it belongs to, accesses for a world which is no longer current are ignored,
+ * so a chunk of the previous dimension still processed by the scanner does not end up in the new one.
+ */
+object MinimapTileStore {
+
+    private const val REGION_SHIFT = 5
+    private const val REGION_CHUNKS = 1 shl (REGION_SHIFT * 2)
+    private const val REGION_MASK = (1 shl REGION_SHIFT) - 1
+
+    private const val COLUMNS = 16 * 16
+    private const val TILE_SIZE = Int.SIZE_BYTES + COLUMNS * Int.SIZE_BYTES + COLUMNS * Short.SIZE_BYTES
+    private const val HEADER_SIZE = REGION_CHUNKS
+    private const val REGION_FILE_SIZE = HEADER_SIZE + REGION_CHUNKS.toLong() * TILE_SIZE
+
+    private const val MAX_OPEN_REGIONS = 16
+
+    private val folder = File(ConfigSystem.rootFolder, "minimap")
+
+    private val unsafeCharacters = Regex("[^A-Za-z0-9_-]")
+
+    /**
+     * Folder of the current server and dimension relative to [folder]
+     */
+    private var key: String? = null
+
+    private val regions = object : LinkedHashMap<Long, MappedByteBuffer>(MAX_OPEN_REGIONS, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, MappedByteBuffer>): Boolean {
+            if (size <= MAX_OPEN_REGIONS) {
+                return false
+            }
+
+            release(eldest.value)
+            return true
+        }
+    }
+
+    /**
+     * Regions which failed to open, they are not tried again until the store is closed
+     */
+    private val failedRegions = HashSet<Long>()
+
+    class Tile {
+        /**
+         * Identifies the content of the chunk the tile has been made of, see [ChunkRenderer]
+         */
+        var fingerprint = 0
+        val colors = IntArray(COLUMNS)
+        val heights = IntArray(COLUMNS)
+    }
+
+    /**
+     * Reads the stored tile of [chunkPos] into [tile].
+     *
+     * @return false if there is no tile stored
+     */
+    @Synchronized
+    fun read(world: World, chunkPos: ChunkPos, tile: Tile): Boolean {
+        val region = region(world, chunkPos, create = false) ?: return false
+        val index = indexInRegion(chunkPos)
+
+        if (region.get(index) == 0.toByte()) {
+            return false
+        }
+
+        var offset = tileOffset(index)
+        tile.fingerprint = region.getInt(offset)
+        offset += Int.SIZE_BYTES
+
+        for (i in 0 until COLUMNS) {
+            tile.colors[i] = region.getInt(offset + i * Int.SIZE_BYTES)
+        }
+        offset += COLUMNS * Int.SIZE_BYTES
+
+        for (i in 0 until COLUMNS) {
+            tile.heights[i] = region.getShort(offset + i * Short.SIZE_BYTES).toInt()
+        }
+
+        return true
+    }
+
+    @Synchronized
+    fun write(world: World, chunkPos: ChunkPos, tile: Tile) {
+        val region = region(world, chunkPos, create = true) ?: return
+        val index = indexInRegion(chunkPos)
+
+        var offset = tileOffset(index)
+        region.putInt(offset, tile.fingerprint)
+        offset += Int.SIZE_BYTES
+
+        for (i in 0 until COLUMNS) {
+            region.putInt(offset + i * Int.SIZE_BYTES, tile.colors[i])
+        }
+        offset += COLUMNS * Int.SIZE_BYTES
+
+        for (i in 0 until COLUMNS) {
+            region.putShort(offset + i * Short.SIZE_BYTES, tile.heights[i].toShort())
+        }
+
+        region.put(index, 1.toByte())
+    }
+
+    /**
+     * Updates a single column of a stored tile, nothing happens if the chunk has no tile yet.
+     *
+     * @param x x coordinate in the chunk (0-15)
+     * @param z z coordinate in the chunk (0-15)
+     */
+    @Suppress("LongParameterList")
+    @Synchronized
+    fun writeColumn(world: World, chunkPos: ChunkPos, x: Int, z: Int, color: Int, height: Int, fingerprint: Int) {
+        val region = region(world, chunkPos, create = false) ?: return
+        val index = indexInRegion(chunkPos)
+
+        if (region.get(index) == 0.toByte()) {
+            return
+        }
+
+        val column = (z shl 4) or x
+        val offset = tileOffset(index)
+
+        region.putInt(offset, fingerprint)
+        region.putInt(offset + Int.SIZE_BYTES + column * Int.SIZE_BYTES, color)
+        region.putShort(
+            offset + Int.SIZE_BYTES + COLUMNS * Int.SIZE_BYTES + column * Short.SIZE_BYTES,
+            height.toShort()
+        )
+    }
+
+    /**
+     * Writes all regions back and closes them
+     */
+    @Synchronized
+    fun close() {
+        regions.values.forEach(::release)
+        regions.clear()
+        failedRegions.clear()
+        key = null
+    }
+
+    /**
+     * Writes [buffer] back and unmaps it right away. Otherwise the mapping is only released by the GC,
+     * which keeps the file locked on Windows. The buffer must not be used afterwards.
+     */
+    private fun release(buffer: MappedByteBuffer) {
+        buffer.force()
+
+        runCatching {
+            unsafe.invokeCleaner(buffer)
+        }.onFailure {
+            logger.warn("Failed to unmap minimap region, it is released by the garbage collector", it)
+        }
+    }
+
+    private val unsafe by lazy {
+        Unsafe::class.java.getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null) as Unsafe
+    }
+
+    private fun indexInRegion(chunkPos: ChunkPos) =
+        ((chunkPos.z and REGION_MASK) shl REGION_SHIFT) or (chunkPos.x and REGION_MASK)
+
+    private fun tileOffset(index: Int) = HEADER_SIZE + index * TILE_SIZE
+
+    private fun region(world: World, chunkPos: ChunkPos, create: Boolean): MappedByteBuffer? {
+        val key = keyOf(world) ?: return null
+
+        if (key != this.key) {
+            close()
+            this.key = key
+        }
+
+        val regionX = chunkPos.x shr REGION_SHIFT
+        val regionZ = chunkPos.z shr REGION_SHIFT
+        val regionKey = ChunkPos.toLong(regionX, regionZ)
+
+        regions[regionKey]?.let { return it }
+
+        if (regionKey in failedRegions) {
+            return null
+        }
+
+        val file = File(File(folder, key), "r.$regionX.$regionZ.bin")
+
+        if (!create && !file.exists()) {
+            return null
+        }
+
+        return try {
+            file.parentFile.mkdirs()
+
+            RandomAccessFile(file, "rw").use { randomAccessFile ->
+                // Mapping beyond the end of the file grows it, unwritten tiles are holes in the file
+                randomAccessFile.channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_FILE_SIZE)
+            }.also { regions[regionKey] = it }
+        } catch (e: IOException) {
+            logger.warn("Failed to open minimap region $file", e)
+            failedRegions.add(regionKey)
+            null
+        }
+    }
+
+    /**
+     * Server address or world name and the dimension, null if [world] is not the current world
+     */
+    private fun keyOf(world: World): String? {
+        if (world !== mc.world) {
+            return null
+        }
+
+        val server = mc.currentServerEntry?.address ?: singleplayerKey() ?: return null
+
+        return "${sanitize(server)}/${sanitize(world.registryKey.value.toString())}"
+    }
+
+    /**
+     * Name of the save directory, level names are not unique
+     */
+    private fun singleplayerKey(): String? {
+        val directory = mc.server?.getSavePath(WorldSavePath.ROOT)?.normalize()?.fileName ?: return null
+
+        return "singleplayer_$directory"
+    }
+
+    private fun sanitize(name: String) = name.replace(unsafeCharacters, "_")
+
+}
@@ -5,6 +5,7 @@
  */
 package net.ccbluex.liquidbounce.lang
 
+import it.unimi.dsi.fastutil.chars.CharOpenHashSet
 import net.ccbluex.liquidbounce.config.gson.util.decode
 import net.ccbluex.liquidbounce.config.types.nesting.Configurable
 import net.ccbluex.liquidbounce.event.EventManager
@@ -96,6 +97,15 @@ class ClientLanguage(private val translations: Map<String, String>) : Language()
 
     private fun getTranslation(key: String) = translations[key]
 
+    /**
+     * Every distinct character used by the translations, e.g. to prewarm font glyphs
+     */
+    val characters: String by lazy {
+        val characters = CharOpenHashSet()
+        translations.values.forEach { translation -> translation.forEach(characters::add) }
+        String(characters.toCharArray())
+    }
+
     /**
      * Get a translation for the given key.
      * If the translation is not found, the fallback will be used.
@@ -0,0 +1,256 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.render
+
+import com.mojang.blaze3d.systems.RenderSystem
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.ccbluex.liquidbounce.render.engine.type.Color4b
+import net.ccbluex.liquidbounce.utils.block.AbstractBlockLocationTracker
+import net.minecraft.client.gl.GlUsage
+import net.minecraft.client.gl.VertexBuffer
+import net.minecraft.client.render.BufferBuilder
+import net.minecraft.client.render.Tessellator
+import net.minecraft.client.render.VertexFormat.DrawMode
+import net.minecraft.client.render.VertexFormats
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Box
+import net.minecraft.util.math.ChunkPos
+import org.joml.Matrix4f
+
+/**
+ * Retained-mode box renderer for the positions of a [AbstractBlockLocationTracker.ChunkBucketed] tracker.
+ *
+ * Every chunk gets its own [VertexBuffer] for the faces and outlines, which is only rebuilt
+ * when the tracker reports a modification of that chunk or the [render] bake key changes.
+ * Vertices are stored relative to the chunk origin, the camera offset is applied through the
+ * model-view matrix when drawing.
+ *
+ * Must only be used on the render thread.
+ */
+class ChunkMeshRenderer<T : Any>(private val tracker: AbstractBlockLocationTracker.ChunkBucketed<T>) {
+
+    private val meshes = Long2ObjectOpenHashMap<ChunkMesh>()
+    private val visitedChunks = LongOpenHashSet()
+
+    private var bakeKey: Any? = null
+
+    /**
+     * Draws all tracked positions. [emit] is called for every position of a chunk that needs to be rebuilt,
+     * it must not modify the tracker.
+     *
+     * @param bakeKey changing it rebuilds every chunk, e.g. because a color has been changed
+     * @param faceTint multiplied with the colors of the faces
+     * @param outlineTint multiplied with the colors of the outlines, null skips the outlines
+     * @return true if anything has been drawn
+     */
+    fun render(
+        env: WorldRenderEnvironment,
+        bakeKey: Any?,
+        faceTint: Color4b = Color4b.WHITE,
+        outlineTint: Color4b? = Color4b.WHITE,
+        emit: MeshBuilder.(pos: BlockPos.Mutable, state: T) -> Unit
+    ): Boolean {
+        if (this.bakeKey != bakeKey) {
+            this.bakeKey = bakeKey
+            meshes.values.forEach { it.modCount = INVALID_MOD_COUNT }
+        }
+
+        visitedChunks.clear()
+        tracker.forEachChunk { chunkKey, modCount ->
+            visitedChunks.add(chunkKey)
+
+            val mesh = meshes.computeIfAbsent(chunkKey) { ChunkMesh(ChunkPos.getPackedX(it), ChunkPos.getPackedZ(it)) }
+            if (mesh.modCount != modCount) {
+                rebuild(chunkKey, mesh, emit)
+                mesh.modCount = modCount
+            }
+        }
+
+        // Chunks which have been unloaded or are empty now
+        val iterator = meshes.long2ObjectEntrySet().fastIterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.longKey !in visitedChunks) {
+                entry.value.close()
+                iterator.remove()
+            }
+        }
+
+        return draw(env, faceTint, outlineTint)
+    }
+
+    private fun rebuild(chunkKey: Long, mesh: ChunkMesh, emit: MeshBuilder.(BlockPos.Mutable, T) -> Unit) {
+        val builder = MeshBuilder(
+            mesh.originX,
+            mesh.originZ,
+            FACE_TESSELLATOR.begin(DrawMode.QUADS, VertexFormats.POSITION_COLOR),
+            OUTLINE_TESSELLATOR.begin(DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR)
+        )
+
+        try {
+            tracker.forEachPositionInChunk(chunkKey) { pos, state ->
+                builder.emit(pos, state)
+            }
+
+            mesh.faces = upload(mesh.faces, builder.faces)
+            mesh.outlines = upload(mesh.outlines, builder.outlines)
+        } finally {
+            FACE_TESSELLATOR.clear()
+            OUTLINE_TESSELLATOR.clear()
+        }
+    }
+
+    private fun upload(previous: VertexBuffer?, builder: BufferBuilder): VertexBuffer? {
+        val built = builder.endNullable()
+
+        if (built == null) {
+            previous?.close()
+            return null
+        }
+
+        val buffer = previous ?: VertexBuffer(GlUsage.STATIC_WRITE)
+        buffer.bind()
+        buffer.upload(built)
+        VertexBuffer.unbind()
+
+        return buffer
+    }
+
+    private fun draw(env: WorldRenderEnvironment, faceTint: Color4b, outlineTint: Color4b?): Boolean {
+        if (meshes.isEmpty()) {
+            return false
+        }
+
+        val shader = RenderSystem.setShader(VertexInputType.PosColor.shaderProgram) ?: return false
+        val camera = env.camera.pos
+        val projectionMatrix = RenderSystem.getProjectionMatrix()
+        val viewMatrix = Matrix4f()
+        var drawn = false
+
+        for (mesh in meshes.values) {
+            viewMatrix.set(RenderSystem.getModelViewMatrix())
+                .mul(env.currentMvpMatrix)
+                .translate(
+                    (mesh.originX - camera.x).toFloat(),
+                    (-camera.y).toFloat(),
+                    (mesh.originZ - camera.z).toFloat()
+                )
+
+            mesh.faces?.let { buffer ->
+                env.withColor(faceTint) {
+                    buffer.bind()
+                    buffer.draw(viewMatrix, projectionMatrix, shader)
+                }
+                drawn = true
+            }
+
+            if (outlineTint != null) {
+                mesh.outlines?.let { buffer ->
+                    env.withColor(outlineTint) {
+                        buffer.bind()
+                        buffer.draw(viewMatrix, projectionMatrix, shader)
+                    }
+                }
+            }
+        }
+
+        VertexBuffer.unbind()
+
+        return drawn
+    }
+
+    /**
+     * Frees all buffers, they will be rebuilt on the next [render] call.
+     */
+    fun clear() {
+        RenderSystem.assertOnRenderThread()
+
+        meshes.values.forEach(ChunkMesh::close)
+        meshes.clear()
+    }
+
+    /**
+     * Writes boxes of a single chunk. Positions are converted to be relative to the chunk origin.
+     */
+    class MeshBuilder internal constructor(
+        private val originX: Int,
+        private val originZ: Int,
+        internal val faces: BufferBuilder,
+        internal val outlines: BufferBuilder
+    ) {
+
+        /**
+         * Adds [box] at [pos] with the given colors. A null [outlineColor] omits the outline.
+         */
+        fun box(pos: BlockPos, box: Box, faceColor: Color4b, outlineColor: Color4b? = null) {
+            val x = (pos.x - originX).toFloat()
+            val y = pos.y.toFloat()
+            val z = (pos.z - originZ).toFloat()
+
+            val minX = x + box.minX.toFloat()
+            val minY = y + box.minY.toFloat()
+            val minZ = z + box.minZ.toFloat()
+            val maxX = x + box.maxX.toFloat()
+            val maxY = y + box.maxY.toFloat()
+            val maxZ = z + box.maxZ.toFloat()
+
+            faces.boxVertices(null, minX, minY, minZ, maxX, maxY, maxZ, true, faceColor.toARGB())
+
+            if (outlineColor != null) {
+                outlines.boxVertices(
+                    null,
+                    minX, minY, minZ,
+                    maxX, maxY, maxZ,
+                    true,
+                    outlineColor.toARGB(),
+                    outline = true
+                )
+            }
+        }
+
+    }
+
+    private class ChunkMesh(chunkX: Int, chunkZ: Int) {
+        val originX = chunkX shl 4
+        val originZ = chunkZ shl 4
+
+        var modCount = INVALID_MOD_COUNT
+        var faces: VertexBuffer? = null
+        var outlines: VertexBuffer? = null
+
+        fun close() {
+            faces?.close()
+            outlines?.close()
+            faces = null
+            outlines = null
+        }
+    }
+
+    private companion object {
+        const val INVALID_MOD_COUNT = Int.MIN_VALUE
+
+        /**
+         * Only used while rebuilding, the resulting buffers are uploaded immediately
+         */
+        val FACE_TESSELLATOR = Tessellator(0x100000)
+        val OUTLINE_TESSELLATOR = Tessellator(0x100000)
+    }
+
+}
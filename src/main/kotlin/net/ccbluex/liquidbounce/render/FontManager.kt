@@ -96,7 +96,7 @@ object FontManager {
         glyphManager = FontGlyphPageManager(
             baseFonts = fontFaces,
             additionalFonts = setOf(CJK_FONT).filterNotNull().toSet()
-        )
+        ).also { manager -> manager.prewarmLanguage() }
     }
 
     internal fun queueFolder(path: File) {
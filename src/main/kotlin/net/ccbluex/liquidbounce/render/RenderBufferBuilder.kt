@@ -30,6 +30,7 @@ import net.minecraft.client.render.*
 import net.minecraft.client.render.VertexFormat.DrawMode
 import net.minecraft.util.math.Box
 import net.minecraft.util.math.Vec3d
+import org.joml.Matrix4f
 
 const val FACE_DOWN = (1 shl 0) or (1 shl 1) or (1 shl 2) or (1 shl 3)
 const val FACE_UP = (1 shl 4) or (1 shl 5) or (1 shl 6) or (1 shl 7)
@@ -79,28 +80,67 @@ class RenderBufferBuilder<I : VertexInputType>(
         color: Color4b? = null,
         verticesToUse: Int = -1
     ) {
-        val matrix = env.currentMvpMatrix
+        buffer.boxVertices(
+            env.currentMvpMatrix,
+            box.minX.toFloat(), box.minY.toFloat(), box.minZ.toFloat(),
+            box.maxX.toFloat(), box.maxY.toFloat(), box.maxZ.toFloat(),
+            color != null,
+            color?.toARGB() ?: 0,
+            useOutlineVertices,
+            verticesToUse
+        )
+    }
 
-        val vertexPositions = if (useOutlineVertices) {
-            box.outlineVertexPositions()
-        } else {
-            box.vertexPositions()
+    /**
+     * Draws [count] boxes of [boxes], each stored as `minX, minY, minZ, maxX, maxY, maxZ`,
+     * with the packed [argb] color. Nothing is allocated per box.
+     *
+     * @param verticesToUse vertices whose bit is set are skipped, see [FACE_DOWN] and [EDGE_NORTH_DOWN]
+     */
+    fun drawBoxes(
+        env: RenderEnvironment,
+        boxes: DoubleArray,
+        argb: Int,
+        count: Int = boxes.size / BOX_STRIDE,
+        useOutlineVertices: Boolean = false,
+        verticesToUse: Int = -1
+    ) {
+        val matrix = env.currentMvpMatrix
+        val hasColor = vertexFormat !is VertexInputType.Pos
+
+        for (i in 0 until count) {
+            val offset = i * BOX_STRIDE
+            buffer.boxVertices(
+                matrix,
+                boxes[offset].toFloat(), boxes[offset + 1].toFloat(), boxes[offset + 2].toFloat(),
+                boxes[offset + 3].toFloat(), boxes[offset + 4].toFloat(), boxes[offset + 5].toFloat(),
+                hasColor, argb, useOutlineVertices, verticesToUse
+            )
         }
+    }
 
-        val check = verticesToUse != -1
-
-        // Draw the vertices of the box
-        for (i in vertexPositions.indices) {
-            if (check && (verticesToUse and (1 shl i)) != 0) {
-                continue
-            }
-
-            val (x, y, z) = vertexPositions[i]
-            val bb = buffer.vertex(matrix, x, y, z)
-
-            if (color != null) {
-                bb.color(color.toARGB())
-            }
+    /**
+     * @see drawBoxes
+     */
+    fun drawBoxes(
+        env: RenderEnvironment,
+        boxes: FloatArray,
+        argb: Int,
+        count: Int = boxes.size / BOX_STRIDE,
+        useOutlineVertices: Boolean = false,
+        verticesToUse: Int = -1
+    ) {
+        val matrix = env.currentMvpMatrix
+        val hasColor = vertexFormat !is VertexInputType.Pos
+
+        for (i in 0 until count) {
+            val offset = i * BOX_STRIDE
+            buffer.boxVertices(
+                matrix,
+                boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                boxes[offset + 3], boxes[offset + 4], boxes[offset + 5],
+                hasColor, argb, useOutlineVertices, verticesToUse
+            )
         }
     }
 
@@ -118,6 +158,11 @@ class RenderBufferBuilder<I : VertexInputType>(
     }
 
     companion object {
+        /**
+         * Amount of values per box in the arrays of [drawBoxes]
+         */
+        const val BOX_STRIDE = 6
+
         val TESSELATOR_A: Tessellator = Tessellator(0x200000)
         val TESSELATOR_B: Tessellator = Tessellator(0x200000)
     }
@@ -171,6 +216,67 @@ class BoxRenderer private constructor(private val env: WorldRenderEnvironment) {
 
 }
 
+/**
+ * Corners of a box, encoded as `x | y << 1 | z << 2` where a set bit means the max coordinate.
+ * Same order as [vertexPositions].
+ */
+private val FACE_CORNERS = byteArrayOf(
+    0, 1, 5, 4, // down
+    2, 6, 7, 3, // up
+    0, 2, 3, 1, // north
+    1, 3, 7, 5, // east
+    4, 5, 7, 6, // south
+    0, 4, 6, 2 // west
+)
+
+/**
+ * Same encoding as [FACE_CORNERS], in the order of [outlineVertexPositions].
+ */
+private val EDGE_CORNERS = byteArrayOf(
+    0, 1, 1, 5, 5, 4, 4, 0, // down
+    0, 2, 1, 3, 5, 7, 4, 6, // sides
+    2, 3, 3, 7, 7, 6, 6, 2 // up
+)
+
+/**
+ * Writes the faces (or the edges, if [outline] is set) of a box directly into this consumer
+ * without creating any intermediate vertex objects.
+ *
+ * @param matrix applied to every vertex, null writes the coordinates unchanged
+ * @param hasColor whether the vertex format has a color element, which gets [argb]
+ * @param skipMask vertices whose bit is set are skipped, -1 skips nothing,
+ * see [FACE_DOWN] and [EDGE_NORTH_DOWN]
+ */
+fun VertexConsumer.boxVertices(
+    matrix: Matrix4f?,
+    minX: Float, minY: Float, minZ: Float,
+    maxX: Float, maxY: Float, maxZ: Float,
+    hasColor: Boolean,
+    argb: Int,
+    outline: Boolean = false,
+    skipMask: Int = -1
+) {
+    val corners = if (outline) EDGE_CORNERS else FACE_CORNERS
+    val check = skipMask != -1
+
+    for (i in corners.indices) {
+        if (check && (skipMask and (1 shl i)) != 0) {
+            continue
+        }
+
+        val corner = corners[i].toInt()
+        val x = if (corner and 1 != 0) maxX else minX
+        val y = if (corner and 2 != 0) maxY else minY
+        val z = if (corner and 4 != 0) maxZ else minZ
+
+        val consumer = if (matrix != null) vertex(matrix, x, y, z) else vertex(x, y, z)
+
+        if (hasColor) {
+            consumer.color(argb)
+        }
+    }
+}
+
 fun Box.vertexPositions(): Array<Vec3> {
     return arrayOf(
         // down
@@ -266,10 +372,13 @@ fun Box.outlineVertexPositions(): Array<Vec3> {
 fun RenderEnvironment.drawSolidBox(consumer: VertexConsumer, box: Box, color: Color4b) {
     val matrix = currentMvpMatrix
 
-    // Draw the vertices of the box
-    box.vertexPositions().forEach { (x, y, z) ->
-        consumer.vertex(matrix, x, y, z).color(color.toARGB())
-    }
+    consumer.boxVertices(
+        matrix,
+        box.minX.toFloat(), box.minY.toFloat(), box.minZ.toFloat(),
+        box.maxX.toFloat(), box.maxY.toFloat(), box.maxZ.toFloat(),
+        true,
+        color.toARGB()
+    )
 }
 
 fun RenderBufferBuilder<VertexInputType.PosTexColor>.drawQuad(
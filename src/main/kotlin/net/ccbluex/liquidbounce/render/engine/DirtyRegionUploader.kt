@@ -0,0 +1,193 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.render.engine
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.GameRenderEvent
+import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
+import net.minecraft.client.texture.NativeImageBackedTexture
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Collects dirty rectangles of a [NativeImageBackedTexture] and uploads only those.
+ *
+ * Overlapping or touching rectangles are merged as long as that does not upload too many clean pixels.
+ * The rectangles are uploaded straight from the backing image, [net.minecraft.client.texture.NativeImage.upload]
+ * selects them with `GL_UNPACK_ROW_LENGTH` and `GL_UNPACK_SKIP_PIXELS`/`ROWS`, so no intermediate images are needed.
+ *
+ * Not thread-safe, callers have to guard it with the same lock as the image.
+ */
+class DirtyRegionUploader(private val texture: NativeImageBackedTexture) {
+
+    /**
+     * x, y, width and height of every dirty rectangle
+     */
+    private val regions = IntArrayList()
+
+    /**
+     * Whether the next upload has to upload the whole texture
+     */
+    private var fullUpload = false
+
+    val isDirty: Boolean
+        get() = fullUpload || !regions.isEmpty
+
+    /**
+     * Marks the rectangle at [x], [y] with size [width] x [height] as modified.
+     */
+    fun markDirty(x: Int, y: Int, width: Int, height: Int) {
+        if (fullUpload || width <= 0 || height <= 0) {
+            return
+        }
+
+        var minX = x
+        var minY = y
+        var maxX = x + width
+        var maxY = y + height
+        var area = width.toLong() * height
+
+        // Absorb existing regions into the new one as long as it stays compact, repeat as it might grow
+        var merged = true
+        while (merged) {
+            merged = false
+
+            var i = 0
+            while (i < regions.size) {
+                val otherMinX = regions.getInt(i)
+                val otherMinY = regions.getInt(i + 1)
+                val otherMaxX = otherMinX + regions.getInt(i + 2)
+                val otherMaxY = otherMinY + regions.getInt(i + 3)
+
+                val touching = otherMinX <= maxX && minX <= otherMaxX && otherMinY <= maxY && minY <= otherMaxY
+                val unionMinX = min(minX, otherMinX)
+                val unionMinY = min(minY, otherMinY)
+                val unionMaxX = max(maxX, otherMaxX)
+                val unionMaxY = max(maxY, otherMaxY)
+                val unionArea = (unionMaxX - unionMinX).toLong() * (unionMaxY - unionMinY)
+                val otherArea = (otherMaxX - otherMinX).toLong() * (otherMaxY - otherMinY)
+
+                if (touching && unionArea <= (area + otherArea) * MAX_MERGE_WASTE) {
+                    minX = unionMinX
+                    minY = unionMinY
+                    maxX = unionMaxX
+                    maxY = unionMaxY
+                    area = unionArea
+
+                    regions.removeElements(i, i + 4)
+                    merged = true
+                } else {
+                    i += 4
+                }
+            }
+        }
+
+        regions.add(minX)
+        regions.add(minY)
+        regions.add(maxX - minX)
+        regions.add(maxY - minY)
+    }
+
+    /**
+     * The whole texture will be uploaded on the next [upload].
+     */
+    fun markAllDirty() {
+        fullUpload = true
+        regions.clear()
+    }
+
+    /**
+     * Uploads all dirty regions. The texture is bound while uploading.
+     *
+     * @return the amount of uploaded bytes
+     */
+    fun upload(): Long {
+        if (!isDirty) {
+            return 0L
+        }
+
+        val image = texture.image ?: error("Texture has no backing image")
+        val textureArea = image.width.toLong() * image.height
+
+        var dirtyArea = 0L
+        for (i in 0 until regions.size step 4) {
+            dirtyArea += regions.getInt(i + 2).toLong() * regions.getInt(i + 3)
+        }
+
+        texture.bindTexture()
+
+        // Many separate calls are slower than one big upload
+        val bytes = if (fullUpload || dirtyArea * FULL_UPLOAD_RATIO >= textureArea) {
+            texture.upload()
+            textureArea * BYTES_PER_PIXEL
+        } else {
+            for (i in 0 until regions.size step 4) {
+                val x = regions.getInt(i)
+                val y = regions.getInt(i + 1)
+
+                image.upload(0, x, y, x, y, regions.getInt(i + 2), regions.getInt(i + 3), false)
+            }
+
+            dirtyArea * BYTES_PER_PIXEL
+        }
+
+        regions.clear()
+        fullUpload = false
+        uploadedBytes += bytes
+
+        return bytes
+    }
+
+    companion object : EventListener {
+
+        /**
+         * Merged regions may be this much larger than the regions they consist of
+         */
+        private const val MAX_MERGE_WASTE = 1.5
+
+        /**
+         * Upload the whole texture once at least 1/[FULL_UPLOAD_RATIO] of it is dirty
+         */
+        private const val FULL_UPLOAD_RATIO = 2
+
+        private const val BYTES_PER_PIXEL = 4L
+
+        private var uploadedBytes = 0L
+
+        /**
+         * Bytes uploaded by all uploaders during the last frame
+         */
+        var bytesLastFrame = 0L
+            private set
+
+        @Suppress("unused")
+        private val frameHandler = handler<GameRenderEvent> {
+            bytesLastFrame = uploadedBytes
+            uploadedBytes = 0L
+
+            if (ModuleDebug.running) {
+                ModuleDebug.debugParameter(this, "Texture Upload", "${bytesLastFrame / 1024} KiB/frame")
+            }
+        }
+
+    }
+
+}
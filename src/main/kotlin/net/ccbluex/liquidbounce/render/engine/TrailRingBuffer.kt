@@ -0,0 +1,155 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.render.engine
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import org.lwjgl.opengl.GL11
+import org.lwjgl.opengl.GL15
+import org.lwjgl.opengl.GL30
+import org.lwjgl.opengl.GL31
+import org.lwjgl.system.MemoryUtil
+import java.io.Closeable
+
+/**
+ * GPU-resident ring buffers of timestamped points, one per trail.
+ *
+ * Every trail owns a slot of [capacity] consecutive points in a single buffer, which is exposed as a
+ * `GL_RGBA32F` texture buffer: xyz is the position and w the time of the point, a time of 0 marks an unused point.
+ * Appending a point writes 16 bytes, the oldest point of a full trail is overwritten.
+ *
+ * Must only be used on the render thread.
+ */
+class TrailRingBuffer(val capacity: Int) : Closeable {
+
+    private var bufferId = GL15.glGenBuffers()
+    val textureId = GL11.glGenTextures()
+
+    /**
+     * A vertex array has to be bound to draw, the vertices are generated from [textureId] in the shader
+     */
+    val vertexArrayId = GL30.glGenVertexArrays()
+
+    private var slotCount = 0
+    private val freeSlots = IntArrayList()
+
+    /**
+     * Slots below this index have been handed out at some point
+     */
+    var usedSlots = 0
+        private set
+
+    private val point = MemoryUtil.memAllocFloat(4)
+    private val emptySlot = MemoryUtil.memCalloc(capacity * POINT_SIZE)
+
+    init {
+        require(capacity > 1) { "A trail needs at least two points" }
+        resize(INITIAL_SLOTS)
+    }
+
+    /**
+     * Returns an empty slot, the buffer grows if every slot is taken.
+     */
+    fun allocate(): Int {
+        if (!freeSlots.isEmpty) {
+            return freeSlots.removeInt(freeSlots.size - 1)
+        }
+
+        if (usedSlots == slotCount) {
+            resize(slotCount * 2)
+        }
+
+        return usedSlots++
+    }
+
+    /**
+     * Clears the points of [slot] and makes it available again.
+     */
+    fun free(slot: Int) {
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, bufferId)
+        GL15.glBufferSubData(GL31.GL_TEXTURE_BUFFER, slotOffset(slot), emptySlot)
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0)
+
+        freeSlots.add(slot)
+    }
+
+    /**
+     * Writes the point at [index] of [slot].
+     */
+    fun write(slot: Int, index: Int, x: Float, y: Float, z: Float, time: Float) {
+        point.put(0, x).put(1, y).put(2, z).put(3, time)
+
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, bufferId)
+        GL15.glBufferSubData(GL31.GL_TEXTURE_BUFFER, slotOffset(slot) + index.toLong() * POINT_SIZE, point)
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0)
+    }
+
+    private fun slotOffset(slot: Int) = slot.toLong() * capacity * POINT_SIZE
+
+    private fun resize(slots: Int) {
+        val newBufferId = GL15.glGenBuffers()
+        val empty = MemoryUtil.memCalloc(slots * capacity * POINT_SIZE)
+
+        try {
+            GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, newBufferId)
+            GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, empty, GL15.GL_DYNAMIC_DRAW)
+        } finally {
+            MemoryUtil.memFree(empty)
+        }
+
+        if (slotCount > 0) {
+            GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, bufferId)
+            GL31.glCopyBufferSubData(
+                GL31.GL_COPY_READ_BUFFER,
+                GL31.GL_TEXTURE_BUFFER,
+                0,
+                0,
+                slotOffset(slotCount)
+            )
+            GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0)
+        }
+
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0)
+        GL15.glDeleteBuffers(bufferId)
+
+        bufferId = newBufferId
+        slotCount = slots
+
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, textureId)
+        GL31.glTexBuffer(GL31.GL_TEXTURE_BUFFER, GL30.GL_RGBA32F, bufferId)
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0)
+    }
+
+    override fun close() {
+        GL30.glDeleteVertexArrays(vertexArrayId)
+        GL11.glDeleteTextures(textureId)
+        GL15.glDeleteBuffers(bufferId)
+        MemoryUtil.memFree(point)
+        MemoryUtil.memFree(emptySlot)
+    }
+
+    companion object {
+        /**
+         * Four floats
+         */
+        private const val POINT_SIZE = 16
+
+        private const val INITIAL_SLOTS = 16
+    }
+
+}
@@ -1,10 +1,13 @@
 package net.ccbluex.liquidbounce.render.engine.font
 
 import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.chars.CharOpenHashSet
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
 import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.ClientLanguageChangedEvent
 import net.ccbluex.liquidbounce.event.events.GameRenderEvent
 import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.liquidbounce.lang.LanguageManager
 import net.ccbluex.liquidbounce.render.FontManager
 import net.ccbluex.liquidbounce.render.engine.font.dynamic.DynamicFontCacheManager
 import net.ccbluex.liquidbounce.render.engine.font.dynamic.DynamicGlyphPage
@@ -43,6 +46,18 @@ class FontGlyphPageManager(
         return (intValue.toLong() shl 32) or charValue.code.toLong()
     }
 
+    @Suppress("unused")
+    private val languageChangeHandler = handler<ClientLanguageChangedEvent> {
+        prewarmLanguage()
+    }
+
+    /**
+     * Prewarms all characters used by the translations of the active language.
+     */
+    fun prewarmLanguage() {
+        LanguageManager.getLanguage()?.let { language -> prewarm(language.characters) }
+    }
+
     @Suppress("unused")
     private val renderHandler = handler<GameRenderEvent> {
         this.dynamicFontManager.update().forEach { update ->
@@ -101,6 +116,31 @@ class FontGlyphPageManager(
         return glyph
     }
 
+    /**
+     * Rasterizes the glyphs of [text] which are not part of the static pages in the background,
+     * so they are already available the first time they are drawn.
+     */
+    fun prewarm(text: CharSequence, style: Int = 0) {
+        val missing = StringBuilder()
+        val seen = CharOpenHashSet()
+
+        for (ch in text) {
+            if (ch in BASIC_CHARS || !seen.add(ch)) {
+                continue
+            }
+
+            if (this.dynamicallyLoadedGlyphs.containsKey(packIntCharKey(style, ch))) {
+                continue
+            }
+
+            missing.append(ch)
+        }
+
+        if (missing.isNotEmpty()) {
+            this.dynamicFontManager.prewarm(missing, style)
+        }
+    }
+
     fun getFallbackGlyph(font: FontManager.FontFace): GlyphDescriptor {
         return getFont(font).fallbackGlyph
     }
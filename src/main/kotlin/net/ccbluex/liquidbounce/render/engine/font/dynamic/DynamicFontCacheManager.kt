@@ -1,17 +1,19 @@
 package net.ccbluex.liquidbounce.render.engine.font.dynamic
 
 import com.mojang.blaze3d.platform.GlStateManager
+import it.unimi.dsi.fastutil.ints.IntArrayList
 import kotlinx.atomicfu.locks.ReentrantLock
 import kotlinx.atomicfu.locks.withLock
 import net.ccbluex.liquidbounce.render.FontManager
+import net.ccbluex.liquidbounce.render.engine.DirtyRegionUploader
 import net.ccbluex.liquidbounce.render.engine.font.FontGlyph
 import net.ccbluex.liquidbounce.render.engine.font.GlyphDescriptor
 import net.ccbluex.liquidbounce.utils.client.logger
-import net.minecraft.client.texture.NativeImage
-import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.atomic.AtomicBoolean
-import java.util.concurrent.atomic.AtomicInteger
-import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
 import kotlin.concurrent.thread
 
 class DynamicFontCacheManager(
@@ -24,75 +26,108 @@ class DynamicFontCacheManager(
     private val glyphPageLock = ReentrantLock()
     private val glyphPageDirtyFlag = AtomicBoolean(false)
     private var glyphPageChanges = ArrayList<ChangeOnAtlas>()
+    private val uploader = DirtyRegionUploader(dynamicGlyphPage.texture)
 
-    private val cacheData = ConcurrentHashMap<GlyphIdentifier, CharCacheData>()
-    private val requests = HashSet<GlyphIdentifier>()
+    /**
+     * Cache state and last usage of every glyph, indexed by [glyphKey].
+     * Blocks are only allocated once a glyph of their range is requested.
+     */
+    private val blocks = AtomicReferenceArray<GlyphBlock>(KEY_SPACE shr BLOCK_BITS)
 
-    private val lock = ReentrantLock()
-    private val condVar = lock.newCondition()
+    /**
+     * Keys of glyphs that have been drawn but are not cached yet. Each key is only queued once,
+     * as the state of the glyph changes from [UNCACHED] to [REQUESTED] before.
+     */
+    private val requests = ConcurrentLinkedQueue<Int>()
+
+    /**
+     * Keys of glyphs requested by [prewarm]. They are only allocated while there is free space on the atlas.
+     */
+    private val prewarmRequests = ConcurrentLinkedQueue<Int>()
+
+    @Volatile
+    private var workerThread: Thread? = null
+
+    private val startTime = System.currentTimeMillis()
+
+    /**
+     * Seconds since this manager has been created, only updated once per frame by [update],
+     * so drawing a glyph does not need to read the clock.
+     */
+    @Volatile
+    private var clock = 0
 
     fun requestGlyph(ch: Char, font: Int) {
-        val glyphIdentifier = GlyphIdentifier(ch, font)
-        val cacheObject = this.cacheData.computeIfAbsent(glyphIdentifier) { CharCacheData() }
+        val key = glyphKey(ch, font)
+        val block = block(key)
+        val index = key and BLOCK_MASK
+
+        block.usages[index] = this.clock
 
-        cacheObject.lastUsage.set(System.currentTimeMillis())
+        if (block.states.get(index) == UNCACHED && block.states.compareAndSet(index, UNCACHED, REQUESTED)) {
+            this.requests.offer(key)
 
-        if (cacheObject.cacheState.get() == UNCACHED) {
             // Notify font cache manager main thread
-            this.lock.withLock {
-                requests.add(glyphIdentifier)
+            LockSupport.unpark(this.workerThread)
+        }
+    }
 
-                condVar.signal()
+    /**
+     * Queues all [chars] of [font] to be rasterized in the background before they are drawn for the first time.
+     * Only uses free space of the atlas, so already cached glyphs are never evicted for this.
+     */
+    fun prewarm(chars: CharSequence, font: Int) {
+        val clock = this.clock
+        var queued = false
+
+        for (ch in chars) {
+            val key = glyphKey(ch, font)
+            val block = block(key)
+            val index = key and BLOCK_MASK
+
+            if (block.states.compareAndSet(index, UNCACHED, REQUESTED)) {
+                block.usages[index] = clock
+                this.prewarmRequests.offer(key)
+                queued = true
             }
         }
+
+        if (queued) {
+            LockSupport.unpark(this.workerThread)
+        }
+    }
+
+    private fun block(key: Int): GlyphBlock {
+        val blockIndex = key ushr BLOCK_BITS
+
+        return this.blocks.get(blockIndex) ?: GlyphBlock().let { created ->
+            if (this.blocks.compareAndSet(blockIndex, null, created)) created else this.blocks.get(blockIndex)
+        }
     }
 
     fun update(): List<ChangeOnAtlas> {
+        this.clock = ((System.currentTimeMillis() - this.startTime) / 1000L).toInt()
+
         if (!this.glyphPageDirtyFlag.get()) {
             return emptyList()
         }
 
         val changes = this.glyphPageLock.withLock {
-            this.dynamicGlyphPage.texture.bindTexture()
-
-            val requiredUpdateCount = this.glyphPageChanges.count { !it.removed }
-
-            if (requiredUpdateCount > 15) {
-                this.dynamicGlyphPage.texture.upload()
-            } else {
-                for (change in this.glyphPageChanges) {
-                    if (change.removed) {
-                        continue
-                    }
-
-                    val bb = change.descriptor.renderInfo.atlasLocation?.pixelBoundingBox ?: continue
-
-                    val width = (bb.xMax - bb.xMin).toInt()
-                    val height = (bb.yMax - bb.yMin).toInt()
-
-                    val chunkImage = NativeImage(width, height, false)
-
-                    chunkImage.use {
-                        this.dynamicGlyphPage.texture.image!!.copyRect(
-                            chunkImage,
-                            bb.xMin.toInt(), bb.yMin.toInt(),
-                            0, 0,
-                            width, height,
-                            false, false
-                        )
+            for (change in this.glyphPageChanges) {
+                if (change.removed) {
+                    continue
+                }
 
-                        chunkImage.upload(
-                            0,
-                            bb.xMin.toInt(), bb.yMin.toInt(),
-                            0, 0,
-                            width, height,
-                            false
-                        )
-                    }
+                val bb = change.descriptor.renderInfo.atlasLocation?.pixelBoundingBox ?: continue
 
-                }
+                this.uploader.markDirty(
+                    bb.xMin.toInt(), bb.yMin.toInt(),
+                    (bb.xMax - bb.xMin).toInt(), (bb.yMax - bb.yMin).toInt()
+                )
             }
 
+            this.uploader.upload()
+
             val changes = this.glyphPageChanges
 
             this.glyphPageChanges = ArrayList()
@@ -107,7 +142,7 @@ class DynamicFontCacheManager(
     }
 
     fun startThread() {
-        thread(name = "lb-dynamic-font-manager") {
+        this.workerThread = thread(name = "lb-dynamic-font-manager") {
             while (!Thread.interrupted()) {
                 try {
                     threadMainLoop()
@@ -121,18 +156,25 @@ class DynamicFontCacheManager(
     }
 
     private fun threadMainLoop() {
-        val requestedChars = this.lock.withLock {
+        if (this.requests.isEmpty() && this.prewarmRequests.isEmpty()) {
             // Wait for stuff to happen
-            this.condVar.await()
+            LockSupport.park(this)
 
-            val retrievedRequests = ArrayList(this.requests)
+            if (Thread.interrupted()) {
+                throw InterruptedException()
+            }
 
-            this.requests.clear()
+            return
+        }
+
+        val requestedKeys = drain(this.requests, Int.MAX_VALUE)
 
-            retrievedRequests
+        if (requestedKeys.isEmpty()) {
+            processPrewarmRequests(drain(this.prewarmRequests, PREWARM_BATCH_SIZE))
+            return
         }
 
-        val allocationList = createAllocationRequests(requestedChars)
+        val allocationList = createAllocationRequests(requestedKeys)
 
         val unsuccessfullAllocations = this.glyphPageLock.withLock {
             tryAllocations(allocationList)
@@ -142,43 +184,71 @@ class DynamicFontCacheManager(
             return
         }
 
-       freeSpace()
+        freeSpace()
 
-
-        val stillUnsuccessfulAllocations =
-            createAllocationRequests(unsuccessfullAllocations.map { GlyphIdentifier(it.codepoint, it.font.style) })
+        val stillUnsuccessfulAllocations = this.glyphPageLock.withLock {
+            tryAllocations(unsuccessfullAllocations)
+        }
 
         // TODO: Optimize the atlas in this situation
         // We weren't able to allocate those chars even after freeing some space. Don't ask us ever again about
         // allocating them >:c
-        stillUnsuccessfulAllocations.forEach { dontRetryAllocationOf(GlyphIdentifier(it.codepoint, it.font.style)) }
+        stillUnsuccessfulAllocations.forEach { setState(glyphKey(it.codepoint, it.font.style), BLOCKED) }
     }
 
-    private fun dontRetryAllocationOf(it: GlyphIdentifier) {
-        this.cacheData[it]!!.cacheState.set(BLOCKED)
+    private fun processPrewarmRequests(keys: IntArray) {
+        val allocationList = createAllocationRequests(keys)
+
+        val unsuccessful = this.glyphPageLock.withLock {
+            tryAllocations(allocationList)
+        }
+
+        if (unsuccessful.isEmpty()) {
+            return
+        }
+
+        // The atlas is full, the remaining glyphs will be requested again once they are drawn
+        unsuccessful.forEach { setState(glyphKey(it.codepoint, it.font.style), UNCACHED) }
+        drain(this.prewarmRequests, Int.MAX_VALUE).forEach { setState(it, UNCACHED) }
+    }
+
+    private fun setState(key: Int, state: Int) {
+        block(key).states.set(key and BLOCK_MASK, state)
     }
 
     private fun freeSpace() {
-        val glyphsToFree = this.cacheData.entries.filter {
-            System.currentTimeMillis() - it.value.lastUsage.get() > MAX_CACHE_TIME_MS
-        }
+        val clock = this.clock
 
-        glyphsToFree.forEach { (glyphId, _) ->
-            val renderInfo = this.dynamicGlyphPage.free(glyphId.codepoint, glyphId.font)
+        this.glyphPageLock.withLock {
+            for (blockIndex in 0 until this.blocks.length()) {
+                val block = this.blocks.get(blockIndex) ?: continue
 
-            if (renderInfo != null) {
-                this.glyphPageChanges.add(
-                    ChangeOnAtlas(
-                        GlyphDescriptor(this.dynamicGlyphPage, renderInfo),
-                        glyphId.font,
-                        removed = true
-                    )
-                )
-            } else {
-                logger.warn("Character '${glyphId.codepoint}' was freed twice.")
-            }
+                for (index in 0 until BLOCK_SIZE) {
+                    if (block.states.get(index) != CACHED || clock - block.usages[index] <= MAX_CACHE_TIME_S) {
+                        continue
+                    }
+
+                    val key = (blockIndex shl BLOCK_BITS) or index
+                    val codepoint = glyphChar(key)
+                    val font = glyphFont(key)
+                    val renderInfo = this.dynamicGlyphPage.free(codepoint, font)
+
+                    if (renderInfo != null) {
+                        this.glyphPageDirtyFlag.set(true)
+                        this.glyphPageChanges.add(
+                            ChangeOnAtlas(
+                                GlyphDescriptor(this.dynamicGlyphPage, renderInfo),
+                                font,
+                                removed = true
+                            )
+                        )
+                    } else {
+                        logger.warn("Character '$codepoint' was freed twice.")
+                    }
 
-            this.cacheData[glyphId]!!.cacheState.set(UNCACHED)
+                    block.states.set(index, UNCACHED)
+                }
+            }
         }
     }
 
@@ -190,7 +260,7 @@ class DynamicFontCacheManager(
 
         requests.forEach {
             if (it !in unsuccessful) {
-                this.cacheData[GlyphIdentifier(it.codepoint, it.font.style)]!!.cacheState.set(CACHED)
+                setState(glyphKey(it.codepoint, it.font.style), CACHED)
 
                 val addedGlyph = this.dynamicGlyphPage.getGlyph(it.codepoint, it.font.style)!!
 
@@ -208,30 +278,30 @@ class DynamicFontCacheManager(
         return unsuccessful
     }
 
-    private fun createAllocationRequests(requestedGlyphs: List<GlyphIdentifier>): List<FontGlyph> {
-        val requests = ArrayList<FontGlyph>()
+    private fun createAllocationRequests(requestedGlyphs: IntArray): List<FontGlyph> {
+        val requests = ArrayList<FontGlyph>(requestedGlyphs.size)
 
-        for (requestedGlyph in requestedGlyphs) {
-            val font = findFontForGlyph(requestedGlyph)
+        for (key in requestedGlyphs) {
+            val font = findFontForGlyph(glyphChar(key), glyphFont(key))
 
             // If we have no font which could draw the requested glyph there is no sense in trying it again.
             if (font == null) {
-                dontRetryAllocationOf(requestedGlyph)
+                setState(key, BLOCKED)
 
                 continue
             }
 
-            requests.add(FontGlyph(requestedGlyph.codepoint, font))
+            requests.add(FontGlyph(glyphChar(key), font))
         }
 
         return requests
     }
 
-    private fun findFontForGlyph(ch: GlyphIdentifier): FontManager.FontId? {
+    private fun findFontForGlyph(ch: Char, font: Int): FontManager.FontId? {
         return this.availableFonts.firstNotNullOfOrNull {
-            val fontInStyle = it.styles.get(ch.font)
+            val fontInStyle = it.styles.get(font)
 
-            if (fontInStyle != null && fontInStyle.awtFont.canDisplay(ch.codepoint)) {
+            if (fontInStyle != null && fontInStyle.awtFont.canDisplay(ch)) {
                 fontInStyle
             } else {
                 null
@@ -242,18 +312,51 @@ class DynamicFontCacheManager(
     class ChangeOnAtlas(val descriptor: GlyphDescriptor, val style: Int, val removed: Boolean)
 }
 
-private data class GlyphIdentifier(val codepoint: Char, val font: Int)
+/**
+ * Packs a glyph into an int: the font style in the upper, the char in the lower 16 bits
+ */
+private fun glyphKey(ch: Char, font: Int) = (font shl 16) or ch.code
+
+private fun glyphChar(key: Int) = (key and 0xFFFF).toChar()
+
+private fun glyphFont(key: Int) = key ushr 16
+
+private fun drain(queue: ConcurrentLinkedQueue<Int>, limit: Int): IntArray {
+    val keys = IntArrayList()
+
+    while (keys.size < limit) {
+        keys.add(queue.poll() ?: break)
+    }
+
+    return keys.toIntArray()
+}
+
+/**
+ * Four font styles with 16-bit chars each
+ */
+private const val KEY_SPACE = 4 shl 16
+private const val BLOCK_BITS = 8
+private const val BLOCK_SIZE = 1 shl BLOCK_BITS
+private const val BLOCK_MASK = BLOCK_SIZE - 1
 
-private const val MAX_CACHE_TIME_MS = 30 * 1000
+private const val PREWARM_BATCH_SIZE = 64
+
+private const val MAX_CACHE_TIME_S = 30
 
 private const val UNCACHED = 0
 private const val CACHED = 1
 private const val BLOCKED = 2
+private const val REQUESTED = 3
 
-private class CharCacheData(
+private class GlyphBlock {
     /**
-     * Possible values: [UNCACHED], [CACHED] and [BLOCKED]
+     * Possible values: [UNCACHED], [REQUESTED], [CACHED] and [BLOCKED]
      */
-    var cacheState: AtomicInteger = AtomicInteger(UNCACHED),
-    val lastUsage: AtomicLong = AtomicLong(0L)
-)
+    val states = AtomicIntegerArray(BLOCK_SIZE)
+
+    /**
+     * Value of [DynamicFontCacheManager.clock] when the glyph was drawn the last time.
+     * Racy writes are fine, it is only used to find glyphs which can be evicted.
+     */
+    val usages = IntArray(BLOCK_SIZE)
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.render.shader.shaders
+
+import com.mojang.blaze3d.platform.GlStateManager
+import net.ccbluex.liquidbounce.render.engine.TrailRingBuffer
+import net.ccbluex.liquidbounce.render.engine.type.Color4b
+import net.ccbluex.liquidbounce.render.shader.Shader
+import net.ccbluex.liquidbounce.utils.io.resourceToString
+import net.minecraft.client.gl.GlUniform
+import net.minecraft.client.gl.VertexBuffer
+import org.joml.Matrix4f
+import org.lwjgl.opengl.GL11
+import org.lwjgl.opengl.GL13
+import org.lwjgl.opengl.GL20
+import org.lwjgl.opengl.GL31
+import org.lwjgl.system.MemoryUtil
+
+/**
+ * Draws the trails of a [TrailRingBuffer] with one instanced draw call, an instance is a segment between two points.
+ * Fading is done in the shader from the time of each point.
+ */
+object TrailShader : Shader(
+    resourceToString("/resources/liquidbounce/shaders/breadcrumbs/trail.vert"),
+    resourceToString("/resources/liquidbounce/shaders/breadcrumbs/trail.frag")
+) {
+
+    private val matrixBuffer = MemoryUtil.memAllocFloat(16)
+
+    private val pointsLocation = GlUniform.getUniformLocation(program, "Points")
+    private val capacityLocation = GlUniform.getUniformLocation(program, "Capacity")
+    private val mvpLocation = GlUniform.getUniformLocation(program, "MVP")
+    private val offsetLocation = GlUniform.getUniformLocation(program, "Offset")
+    private val colorLocation = GlUniform.getUniformLocation(program, "Color")
+    private val timeLocation = GlUniform.getUniformLocation(program, "Time")
+    private val aliveLocation = GlUniform.getUniformLocation(program, "Alive")
+    private val fadeLocation = GlUniform.getUniformLocation(program, "Fade")
+    private val heightLocation = GlUniform.getUniformLocation(program, "Height")
+
+    /**
+     * @param offset position of the buffer origin relative to the camera
+     * @param alive time after which points disappear, 0 to keep them
+     * @param height height of the trail, 0 draws lines
+     */
+    @Suppress("LongParameterList")
+    fun draw(
+        buffer: TrailRingBuffer,
+        mvp: Matrix4f,
+        offsetX: Float,
+        offsetY: Float,
+        offsetZ: Float,
+        color: Color4b,
+        time: Float,
+        alive: Float,
+        fade: Boolean,
+        height: Float
+    ) {
+        if (buffer.usedSlots == 0) {
+            return
+        }
+
+        use()
+
+        matrixBuffer.position(0)
+        mvp.get(matrixBuffer)
+        GL20.glUniformMatrix4fv(mvpLocation, false, matrixBuffer)
+        GL20.glUniform1i(pointsLocation, 0)
+        GL20.glUniform1i(capacityLocation, buffer.capacity)
+        GL20.glUniform3f(offsetLocation, offsetX, offsetY, offsetZ)
+        color.putToUniform(colorLocation)
+        GL20.glUniform1f(timeLocation, time)
+        GL20.glUniform1f(aliveLocation, alive)
+        GL20.glUniform1i(fadeLocation, if (fade) 1 else 0)
+        GL20.glUniform1f(heightLocation, height)
+
+        GlStateManager._activeTexture(GL13.GL_TEXTURE0)
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, buffer.textureId)
+        GlStateManager._glBindVertexArray(buffer.vertexArrayId)
+
+        val lines = height == 0f
+        GL31.glDrawArraysInstanced(
+            if (lines) GL11.GL_LINES else GL11.GL_TRIANGLES,
+            0,
+            if (lines) 2 else 6,
+            buffer.usedSlots * buffer.capacity
+        )
+
+        VertexBuffer.unbind()
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0)
+        stop()
+    }
+
+}
@@ -26,7 +26,11 @@ import kotlin.math.sqrt
 
 private const val NATIVE_ITEM_SIZE: Int = 16
 
-private class Atlas(
+/**
+ * A rendered item atlas, immutable so the image, its regions and its generation always belong together.
+ */
+class Atlas(
+    val generation: Int,
     val map: Map<Item, Pair<Vec2i, Vec2i>>,
     val image: BufferedImage,
     /**
@@ -34,15 +38,36 @@ private class Atlas(
      * `minecraft:blue_wall_banner` has no texture.
      */
     val aliasMap: Map<Identifier, Identifier>
-)
+) {
+
+    fun resolveAliasIfPresent(name: Identifier) = aliasMap[name] ?: name
+
+    fun getItemImage(item: Item): BufferedImage? {
+        val (atlasStart, atlasEnd) = map[item] ?: return null
+
+        return image.getSubimage(
+            atlasStart.x,
+            atlasStart.y,
+            atlasEnd.x - atlasStart.x,
+            atlasEnd.y - atlasStart.y,
+        )!!
+    }
+
+}
 
 /**
  *
  */
 object ItemImageAtlas : EventListener {
 
+    @Volatile
     private var atlas: Atlas? = null
 
+    /**
+     * Incremented every time the atlas is rendered, so encoded images of an old atlas can be told apart.
+     */
+    private var generation = 0
+
     fun updateAtlas(drawContext: DrawContext) {
         if (this.atlas != null) {
             return
@@ -67,7 +92,7 @@ object ItemImageAtlas : EventListener {
 
         renderer.deleteFramebuffer()
 
-        this.atlas = Atlas(items, img, findAliases())
+        this.atlas = Atlas(++this.generation, items, img, findAliases())
     }
 
     private fun findAliases(): Map<Identifier, Identifier> {
@@ -95,20 +120,19 @@ object ItemImageAtlas : EventListener {
     val isAtlasAvailable
         get() = this.atlas != null
 
+    /**
+     * The current atlas or null if it is not available. Use it instead of the single accessors
+     * when several of them have to belong to the same atlas, it is replaced when the resources are reloaded.
+     */
+    val snapshot: Atlas?
+        get() = this.atlas
+
     fun resolveAliasIfPresent(name: Identifier): Identifier {
-        return atlas!!.aliasMap[name] ?: return name
+        return atlas!!.resolveAliasIfPresent(name)
     }
 
     fun getItemImage(item: Item): BufferedImage? {
-        val atlas = requireNotNull(this.atlas) { "Atlas is not available yet" }
-        val (atlasStart, atlasEnd) = atlas.map[item] ?: return null
-
-        return atlas.image.getSubimage(
-            atlasStart.x,
-            atlasStart.y,
-            atlasEnd.x - atlasStart.x,
-            atlasEnd.y - atlasStart.y,
-        )!!
+        return requireNotNull(this.atlas) { "Atlas is not available yet" }.getItemImage(item)
     }
 }
 
@@ -40,7 +40,6 @@ import net.ccbluex.liquidbounce.utils.client.variable
 import net.minecraft.text.HoverEvent
 import org.graalvm.polyglot.Context
 import org.graalvm.polyglot.HostAccess
-import org.graalvm.polyglot.Source
 import org.graalvm.polyglot.Value
 import org.graalvm.polyglot.io.IOAccess
 import java.io.File
@@ -54,6 +53,12 @@ class PolyglotScript(
 ) {
 
     private val context: Context = Context.newBuilder(language)
+        .apply {
+            // The debugger is an engine option, so debugged scripts cannot share the engine
+            if (!debugOptions.enabled) {
+                engine(ScriptManager.engine)
+            }
+        }
         .allowHostAccess(HostAccess.ALL) // Allow access to all Java classes
         .allowHostClassLookup { true }
         .currentWorkingDirectory(file.parentFile.toPath())
@@ -127,6 +132,23 @@ class PolyglotScript(
      */
     private var scriptEnabled = false
 
+    /**
+     * Milliseconds it took to evaluate the script and call its load event
+     */
+    var loadTime = 0L
+        private set
+
+    /**
+     * Milliseconds the first enable took, which includes running the enable handlers for the first time
+     */
+    var warmUpTime = -1L
+        private set
+
+    /**
+     * Execution times of the event handlers registered by the modules of this script
+     */
+    val profile = ScriptProfile()
+
     private val globalEvents = mutableMapOf<String, () -> Unit>()
 
     /**
@@ -140,8 +162,10 @@ class PolyglotScript(
      * Initialization of scripts
      */
     fun initScript() {
+        val startTime = System.nanoTime()
+
         // Evaluate script
-        context.eval(Source.newBuilder(language, file).build())
+        context.eval(ScriptManager.sourceOf(language, file))
 
         // Call load event
         callGlobalEvent("load")
@@ -151,7 +175,8 @@ class PolyglotScript(
             error("Script '${file.name}' is missing required information!")
         }
 
-        logger.info("[ScriptAPI] Successfully loaded script '${file.name}'.")
+        loadTime = (System.nanoTime() - startTime) / 1_000_000
+        logger.info("[ScriptAPI] Successfully loaded script '${file.name}' in $loadTime ms.")
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -243,6 +268,8 @@ class PolyglotScript(
             return
         }
 
+        val startTime = System.nanoTime()
+
         callGlobalEvent("enable")
 
         registeredModules.forEach(ModuleManager::addModule)
@@ -253,6 +280,11 @@ class PolyglotScript(
             (choice.parent.choices as MutableList<Any>).add(choice)
         }
         scriptEnabled = true
+
+        if (warmUpTime < 0) {
+            warmUpTime = (System.nanoTime() - startTime) / 1_000_000
+            logger.info("[ScriptAPI] Script '${file.name}' warmed up in $warmUpTime ms.")
+        }
     }
 
     /**
@@ -39,6 +39,19 @@ object ScriptManager {
 
     private var isInitialized = false
 
+    /**
+     * The engine shared by all scripts, so parsed and compiled code outlives a script and survives reloads.
+     * Scripts with debugger support use their own engine, because the debugger is configured on the engine.
+     */
+    lateinit var engine: Engine
+        private set
+
+    /**
+     * Sources of the script files, reused as long as the file has not been modified.
+     * The engine caches code per source, so handing it the same source again skips parsing.
+     */
+    private val sources = hashMapOf<File, CachedSource>()
+
     /**
      * A list that holds all the loaded scripts.
      */
@@ -53,11 +66,17 @@ object ScriptManager {
         }
     }
 
+    /**
+     * The auxiliary engine cache persists compiled code between client starts.
+     * It is only supported by Oracle GraalVM and therefore has to be enabled with `-Dliquidbounce.scripts.engineCache`.
+     */
+    private val engineCacheFile = File(root, ".cache/engine.bin")
+
     fun initializeEngine() {
         ScriptAsyncUtil.TickScheduler
 
-        // Initialize the script engine and log its version and supported languages.
-        val engine = Engine.create()
+        // Initialize the shared script engine and log its version and supported languages.
+        engine = createEngine()
         logger.info(
             "[ScriptAPI] Engine Version: ${engine.version}, " +
                 "Supported languages: [ ${engine.languages.keys.joinToString(", ")} ]"
@@ -65,6 +84,61 @@ object ScriptManager {
         isInitialized = true
     }
 
+    private fun createEngine(): Engine {
+        if (System.getProperty("liquidbounce.scripts.engineCache") == null) {
+            return Engine.create()
+        }
+
+        engineCacheFile.parentFile.mkdirs()
+
+        // The cache is either loaded or stored when the engine is closed, both at once is not supported
+        val option = if (engineCacheFile.exists()) "engine.CacheLoad" else "engine.CacheStore"
+
+        return try {
+            Engine.newBuilder()
+                .allowExperimentalOptions(true)
+                .option(option, engineCacheFile.absolutePath)
+                .build()
+        } catch (e: IllegalArgumentException) {
+            logger.warn("[ScriptAPI] Engine cache is not supported by this runtime.", e)
+            Engine.create()
+        }
+    }
+
+    /**
+     * Closes the contexts of all scripts and the shared engine, which also stores the engine cache if enabled.
+     * Scripts are not disabled, so their modules are still saved with the configuration.
+     */
+    fun closeEngine() {
+        if (!isInitialized) {
+            return
+        }
+
+        scripts.forEach(PolyglotScript::close)
+        engine.close()
+        isInitialized = false
+    }
+
+    /**
+     * Returns the source of [file], which is only read and built again when the file has changed.
+     */
+    fun sourceOf(language: String, file: File): Source {
+        val lastModified = file.lastModified()
+        val length = file.length()
+
+        sources[file]?.let { cached ->
+            if (cached.language == language && cached.lastModified == lastModified && cached.length == length) {
+                return cached.source
+            }
+        }
+
+        val source = Source.newBuilder(language, file).build()
+        sources[file] = CachedSource(language, lastModified, length, source)
+        return source
+    }
+
+    private class CachedSource(val language: String, val lastModified: Long, val length: Long, val source: Source)
+
     /**
      * Loads all scripts found in the scripts directory. This method scans the directory for script files
      * and directories containing a main script file. It then loads and enables all found scripts.
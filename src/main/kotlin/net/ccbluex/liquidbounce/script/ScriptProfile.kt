@@ -0,0 +1,74 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.script
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Execution times of the event handlers of a script, keyed by module and event name.
+ *
+ * Handlers resolve their [HandlerStatistics] once on registration, so recording a call
+ * is only two atomic additions.
+ */
+class ScriptProfile {
+
+    private val handlers = ConcurrentHashMap<String, HandlerStatistics>()
+
+    fun handler(module: String, event: String): HandlerStatistics =
+        handlers.computeIfAbsent("$module::$event") { HandlerStatistics() }
+
+    /**
+     * Statistics of all handlers which have been called at least once, slowest in total first
+     */
+    fun entries() = handlers.entries
+        .filter { (_, statistics) -> statistics.calls.get() > 0 }
+        .sortedByDescending { (_, statistics) -> statistics.nanos.get() }
+
+    fun reset() {
+        handlers.values.forEach(HandlerStatistics::reset)
+    }
+
+    class HandlerStatistics {
+        val calls = AtomicLong()
+        val nanos = AtomicLong()
+        val maxNanos = AtomicLong()
+        val errors = AtomicLong()
+
+        fun record(nanos: Long) {
+            calls.incrementAndGet()
+            this.nanos.addAndGet(nanos)
+            maxNanos.accumulateAndGet(nanos, ::maxOf)
+        }
+
+        fun reset() {
+            calls.set(0)
+            nanos.set(0)
+            maxNanos.set(0)
+            errors.set(0)
+        }
+
+        override fun toString() = "${calls.get()} calls, " +
+            "avg %.3f ms, max %.3f ms, ${errors.get()} errors".format(
+                nanos.get() / calls.get().coerceAtLeast(1) / 1e6,
+                maxNanos.get() / 1e6
+            )
+    }
+
+}
@@ -24,6 +24,7 @@ import net.ccbluex.liquidbounce.event.events.RefreshArrayListEvent
 import net.ccbluex.liquidbounce.features.module.Category
 import net.ccbluex.liquidbounce.features.module.ClientModule
 import net.ccbluex.liquidbounce.script.PolyglotScript
+import net.ccbluex.liquidbounce.script.ScriptProfile
 import net.ccbluex.liquidbounce.utils.client.*
 import java.util.function.Supplier
 import kotlin.reflect.KClass
@@ -33,7 +34,15 @@ class ScriptModule(val script: PolyglotScript, moduleObject: Map<String, Any>) :
     category = Category.fromReadableName(moduleObject["category"] as String)!!
 ) {
 
+    /**
+     * Handlers of events which are not client events, like enable and disable
+     */
     private val events = hashMapOf<String, org.graalvm.polyglot.Value>()
+
+    /**
+     * Hooks of client events, each calling its handler directly without a lookup
+     */
+    private val hooks = hashMapOf<Class<out Event>, EventHook<Event>>()
     private val _values = linkedMapOf<String, Value<*>>()
     override var tag: String? = null
         set(value) {
@@ -81,8 +90,15 @@ class ScriptModule(val script: PolyglotScript, moduleObject: Map<String, Any>) :
             return
         }
 
-        events[eventName] = handler
-        hookHandler(eventName)
+        // Get event case-insensitive
+        val clazz = LOWERCASE_NAME_EVENT_MAP[eventName.lowercase()]
+
+        if (clazz == null) {
+            events[eventName] = handler
+            return
+        }
+
+        hookHandler(clazz.java, eventName, handler)
     }
 
     override fun enable() = callEvent("enable")
@@ -95,9 +111,24 @@ class ScriptModule(val script: PolyglotScript, moduleObject: Map<String, Any>) :
      * @param payload when event is "enable" or "disable", it will be null
      */
     private fun callEvent(event: String, payload: Event? = null) {
+        val handler = events[event] ?: return
+
+        invokeHandler(event, handler, payload)
+    }
+
+    private fun invokeHandler(
+        event: String,
+        handler: org.graalvm.polyglot.Value,
+        payload: Event?,
+        statistics: ScriptProfile.HandlerStatistics? = null
+    ) {
+        val startTime = System.nanoTime()
+
         try {
-            events[event]?.executeVoid(payload)
+            handler.executeVoid(payload)
         } catch (throwable: Throwable) {
+            statistics?.errors?.incrementAndGet()
+
             if (inGame) {
                 chat(
                     regular("["),
@@ -121,25 +152,22 @@ class ScriptModule(val script: PolyglotScript, moduleObject: Map<String, Any>) :
 
             // Disable the module if an error occurs
             enabled = false
+        } finally {
+            statistics?.record(System.nanoTime() - startTime)
         }
     }
 
     /**
-     * Register new event hook
+     * Register new event hook, which replaces the previous handler of the same event.
+     * The handler and its statistics are resolved here, so dispatching an event only crosses
+     * into the script once.
      */
-    private fun hookHandler(eventName: String) {
-        // Get event case-insensitive
-        val clazz = LOWERCASE_NAME_EVENT_MAP[eventName.lowercase()] ?: return
-
-        EventManager.registerEventHook(
-            clazz.java,
-            EventHook(
-                this,
-                {
-                    callEvent(eventName, it)
-                }
-            )
-        )
+    private fun hookHandler(clazz: Class<out Event>, eventName: String, handler: org.graalvm.polyglot.Value) {
+        val statistics = script.profile.handler(name, eventName)
+        val hook = EventHook<Event>(this, { invokeHandler(eventName, handler, it, statistics) })
+
+        hooks.put(clazz, hook)?.let { previous -> EventManager.unregisterEventHook(clazz, previous) }
+        EventManager.registerEventHook(clazz, hook)
     }
 
     companion object {
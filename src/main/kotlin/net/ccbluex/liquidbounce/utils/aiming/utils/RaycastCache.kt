@@ -0,0 +1,110 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.aiming.utils
+
+import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.BlockChangeEvent
+import net.ccbluex.liquidbounce.event.events.GameTickEvent
+import net.ccbluex.liquidbounce.event.events.WorldChangeEvent
+import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
+import net.ccbluex.liquidbounce.utils.client.mc
+import net.minecraft.util.hit.BlockHitResult
+import net.minecraft.util.math.Vec3d
+import net.minecraft.world.RaycastContext
+
+/**
+ * Tick-scoped cache of the block raycasts used to check visibility.
+ *
+ * Rotation finding probes fixed spots of a box, so modules aiming at the same block or entity
+ * in the same tick cast identical rays. Those are answered from memory instead of walking the world again.
+ * The cache is cleared every tick and whenever a block changes.
+ *
+ * Only rays cast on the client thread are cached.
+ */
+object RaycastCache : EventListener {
+
+    private val results = HashMap<RayKey, BlockHitResult>()
+
+    /**
+     * Rays which were actually cast and rays which were served from the cache, since the last tick
+     */
+    private var castRays = 0
+    private var cachedRays = 0
+
+    /**
+     * Casts a ray from [start] to [end] against block outlines, ignoring fluids.
+     */
+    fun raycast(start: Vec3d, end: Vec3d): BlockHitResult? {
+        val world = mc.world ?: return null
+
+        if (!mc.isOnThread) {
+            return world.raycast(createContext(start, end))
+        }
+
+        val key = RayKey(start.x, start.y, start.z, end.x, end.y, end.z)
+
+        results[key]?.let {
+            cachedRays++
+            return it
+        }
+
+        castRays++
+        return world.raycast(createContext(start, end)).also { results[key] = it }
+    }
+
+    private fun createContext(start: Vec3d, end: Vec3d) =
+        RaycastContext(start, end, RaycastContext.ShapeType.OUTLINE, RaycastContext.FluidHandling.NONE, mc.player)
+
+    fun invalidate() {
+        results.clear()
+    }
+
+    @Suppress("unused")
+    private val tickHandler = handler<GameTickEvent> {
+        if (ModuleDebug.running) {
+            ModuleDebug.debugParameter(this, "Cast", castRays)
+            ModuleDebug.debugParameter(this, "Cached", cachedRays)
+        }
+
+        castRays = 0
+        cachedRays = 0
+        invalidate()
+    }
+
+    @Suppress("unused")
+    private val blockChangeHandler = handler<BlockChangeEvent> {
+        invalidate()
+    }
+
+    @Suppress("unused")
+    private val worldChangeHandler = handler<WorldChangeEvent> {
+        invalidate()
+    }
+
+    private data class RayKey(
+        val startX: Double,
+        val startY: Double,
+        val startZ: Double,
+        val endX: Double,
+        val endY: Double,
+        val endZ: Double
+    )
+
+}
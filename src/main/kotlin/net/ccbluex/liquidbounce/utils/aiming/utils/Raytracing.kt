@@ -144,11 +144,7 @@ fun raycast(
 fun canSeePointFrom(
     eyes: Vec3d,
     vec3: Vec3d,
-) = mc.world?.raycast(
-    RaycastContext(
-        eyes, vec3, RaycastContext.ShapeType.OUTLINE, RaycastContext.FluidHandling.NONE, mc.player,
-    ),
-)?.type == HitResult.Type.MISS
+) = RaycastCache.raycast(eyes, vec3)?.type == HitResult.Type.MISS
 
 /**
  * Allows you to check if your enemy is behind a wall
@@ -197,12 +193,7 @@ fun facingBlock(
     expectedSide: Direction? = null,
     expectedMaxRange: Double? = null,
 ): Boolean {
-    val searchedPos =
-        mc.world?.raycast(
-            RaycastContext(
-                eyes, vec3, RaycastContext.ShapeType.OUTLINE, RaycastContext.FluidHandling.NONE, mc.player,
-            ),
-        ) ?: return false
+    val searchedPos = RaycastCache.raycast(eyes, vec3) ?: return false
 
     if (searchedPos.type != HitResult.Type.BLOCK || (expectedSide != null && searchedPos.side != expectedSide)) {
         return false
@@ -18,11 +18,14 @@
  */
 package net.ccbluex.liquidbounce.utils.block
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet
 import it.unimi.dsi.fastutil.longs.LongSet
 import net.minecraft.block.BlockState
 import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.ChunkPos
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.read
 import kotlin.concurrent.write
@@ -169,8 +172,6 @@ sealed class AbstractBlockLocationTracker<T> : ChunkScanner.BlockChangeSubscribe
                 }
             }
         }
-
-        private class FullMutableEntry<K, V>(override var key: K, override var value: V) : Map.Entry<K, V>
     }
 
     /**
@@ -205,4 +206,190 @@ sealed class AbstractBlockLocationTracker<T> : ChunkScanner.BlockChangeSubscribe
             positionAndState.keys.removeIf { it.x shr 4 == x && it.z shr 4 == z }
         }
     }
+
+    /**
+     * This base implementation stores [BlockPos] and state [T] in one bucket per chunk.
+     *
+     * Each bucket has its own lock, so chunks can be scanned in parallel without contention,
+     * and unloading a chunk only removes its bucket.
+     *
+     * @see State2BlockPos
+     * @see AbstractBlockLocationTracker
+     */
+    abstract class ChunkBucketed<T : Any> : AbstractBlockLocationTracker<T>() {
+        private val buckets = Long2ObjectOpenHashMap<ChunkBucket<T>>()
+
+        /**
+         * Only guards [buckets] itself, the content of a bucket is guarded by [ChunkBucket.lock]
+         */
+        private val bucketsLock = ReentrantReadWriteLock()
+
+        /**
+         * Source of [ChunkBucket.modCount], shared by all buckets so a recreated bucket never repeats an old value
+         */
+        private val modifications = AtomicInteger()
+
+        private fun bucketOrNull(pos: BlockPos) = bucketsLock.read {
+            buckets.get(ChunkPos.toLong(pos.x shr 4, pos.z shr 4))
+        }
+
+        private fun bucket(pos: BlockPos): ChunkBucket<T> = bucketOrNull(pos) ?: bucketsLock.write {
+            val key = ChunkPos.toLong(pos.x shr 4, pos.z shr 4)
+            buckets.get(key) ?: ChunkBucket<T>(key).also { buckets.put(key, it) }
+        }
+
+        private fun bucketSnapshot() = bucketsLock.read { buckets.values.toTypedArray() }
+
+        /**
+         * Calls [action] for every tracked position without allocating anything per position.
+         *
+         * The lock of each bucket is held while [action] is called, so it must not modify this tracker.
+         */
+        fun forEachPosition(action: (BlockPos.Mutable, T) -> Unit) {
+            val mutable = BlockPos.Mutable()
+
+            for (bucket in bucketSnapshot()) {
+                bucket.lock.read {
+                    val iterator = bucket.states.long2ObjectEntrySet().fastIterator()
+                    while (iterator.hasNext()) {
+                        val entry = iterator.next()
+                        action(mutable.set(entry.longKey), entry.value)
+                    }
+                }
+            }
+        }
+
+        /**
+         * Calls [action] with the packed [ChunkPos] and the modification count of every non-empty bucket.
+         *
+         * The modification count changes whenever a position of that chunk is tracked or untracked,
+         * so it can be used to find out which chunks have to be rebuilt by a renderer.
+         */
+        fun forEachChunk(action: (chunkKey: Long, modCount: Int) -> Unit) {
+            for (bucket in bucketSnapshot()) {
+                val modCount = bucket.lock.read {
+                    if (bucket.states.isEmpty()) -1 else bucket.modCount
+                }
+
+                if (modCount != -1) {
+                    action(bucket.key, modCount)
+                }
+            }
+        }
+
+        /**
+         * Like [forEachPosition], but only for the bucket of the chunk [chunkKey].
+         */
+        fun forEachPositionInChunk(chunkKey: Long, action: (BlockPos.Mutable, T) -> Unit) {
+            val bucket = bucketsLock.read { buckets.get(chunkKey) } ?: return
+            val mutable = BlockPos.Mutable()
+
+            bucket.lock.read {
+                val iterator = bucket.states.long2ObjectEntrySet().fastIterator()
+                while (iterator.hasNext()) {
+                    val entry = iterator.next()
+                    action(mutable.set(entry.longKey), entry.value)
+                }
+            }
+        }
+
+        final override fun allPositions() = sequence<BlockPos> {
+            val mutable = BlockPos.Mutable()
+            var positions = LongArray(0)
+
+            for (bucket in bucketSnapshot()) {
+                // Copy the positions, so the consumer is free to modify the tracker
+                val size = bucket.lock.read {
+                    if (positions.size < bucket.states.size) {
+                        positions = LongArray(bucket.states.size)
+                    }
+                    bucket.states.keys.toArray(positions)
+                    bucket.states.size
+                }
+
+                for (i in 0 until size) {
+                    yield(mutable.set(positions[i]))
+                }
+            }
+        }
+
+        final override fun iterate() = sequence<Map.Entry<BlockPos, T>> {
+            val mutable = BlockPos.Mutable()
+            var positions = LongArray(0)
+            var states = arrayOfNulls<Any>(0)
+            var entry: FullMutableEntry<BlockPos, T>? = null
+
+            for (bucket in bucketSnapshot()) {
+                val size = bucket.lock.read {
+                    val size = bucket.states.size
+                    if (positions.size < size) {
+                        positions = LongArray(size)
+                        states = arrayOfNulls(size)
+                    }
+
+                    var index = 0
+                    val iterator = bucket.states.long2ObjectEntrySet().fastIterator()
+                    while (iterator.hasNext()) {
+                        val bucketEntry = iterator.next()
+                        positions[index] = bucketEntry.longKey
+                        states[index] = bucketEntry.value
+                        index++
+                    }
+
+                    size
+                }
+
+                for (index in 0 until size) {
+                    mutable.set(positions[index])
+
+                    @Suppress("UNCHECKED_CAST")
+                    val state = states[index] as T
+                    val current = entry?.also { it.value = state } ?: FullMutableEntry(mutable, state)
+                    entry = current
+                    yield(current)
+                }
+            }
+        }
+
+        final override fun isEmpty() = bucketSnapshot().all { bucket -> bucket.lock.read { bucket.states.isEmpty() } }
+
+        final override fun track(pos: BlockPos, state: T) {
+            val bucket = bucket(pos)
+            bucket.lock.write {
+                bucket.states.put(pos.asLong(), state)
+                bucket.modCount = modifications.incrementAndGet()
+            }
+        }
+
+        final override fun untrack(pos: BlockPos): Boolean {
+            val bucket = bucketOrNull(pos) ?: return false
+            return bucket.lock.write {
+                val removed = bucket.states.remove(pos.asLong()) != null
+                if (removed) {
+                    bucket.modCount = modifications.incrementAndGet()
+                }
+                removed
+            }
+        }
+
+        final override fun clearAllChunks() {
+            bucketsLock.write {
+                buckets.clear()
+            }
+        }
+
+        final override fun clearChunk(x: Int, z: Int) {
+            bucketsLock.write {
+                buckets.remove(ChunkPos.toLong(x, z))
+            }
+        }
+
+        private class ChunkBucket<T>(val key: Long) {
+            val lock = ReentrantReadWriteLock()
+            val states = Long2ObjectOpenHashMap<T>()
+            var modCount = 0
+        }
+    }
+
+    private class FullMutableEntry<K, V>(override var key: K, override var value: V) : Map.Entry<K, V>
 }
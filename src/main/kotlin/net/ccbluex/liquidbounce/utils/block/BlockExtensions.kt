@@ -32,7 +32,6 @@ import net.ccbluex.liquidbounce.event.EventManager
 import net.ccbluex.liquidbounce.event.events.BlockBreakingProgressEvent
 import net.ccbluex.liquidbounce.render.FULL_BOX
 import net.ccbluex.liquidbounce.utils.client.*
-import net.ccbluex.liquidbounce.utils.kotlin.mapArray
 import net.ccbluex.liquidbounce.utils.math.rangeTo
 import net.minecraft.block.*
 import net.minecraft.entity.Entity
@@ -56,6 +55,9 @@ import kotlin.math.floor
 
 val DEFAULT_BLOCK_STATE: BlockState = Blocks.AIR.defaultState
 
+@PublishedApi
+internal const val HALF_BLOCK_DIAGONAL = 0.8660254f
+
 fun Vec3i.toBlockPos() = BlockPos(this)
 
 fun BlockPos.getState() = mc.world?.getBlockState(this)
@@ -201,8 +203,10 @@ inline fun Vec3d.searchBlocksInCuboid(
     radius: Float,
     crossinline filter: (BlockPos, BlockState) -> Boolean
 ): Sequence<Pair<BlockPos, BlockState>> = sequence {
+    val cursor = WorldCursor(mc.world ?: return@sequence)
+
     searchBlocksInCuboid(radius).forEach {
-        val state = it.getState() ?: return@forEach
+        val state = cursor.getBlockState(it)
 
         if (filter(it, state)) {
             yield(Pair(it.toImmutable(), state))
@@ -211,20 +215,25 @@ inline fun Vec3d.searchBlocksInCuboid(
 }
 
 /**
- * Search blocks around the position in a specific [radius]
+ * Search blocks around the position in a specific [radius], nearest first.
+ * As the sequence is lazy, taking only a few results stops the search early.
  */
 inline fun Vec3d.searchBlocksInRadius(
     radius: Float,
     crossinline filter: (BlockPos, BlockState) -> Boolean,
 ): Sequence<Pair<BlockPos, BlockState>> = sequence {
     val radiusSquared = (radius * radius).toDouble()
-    searchBlocksInCuboid(radius).forEach {
-        val state = it.getState() ?: return@forEach
+    val center = BlockPos.ofFloored(this@searchBlocksInRadius)
+    val cursor = WorldCursor(mc.world ?: return@sequence)
 
+    // The distance is measured to the block center, which is at most half a block diagonal off the center block
+    SphereOffsets.of(radius + HALF_BLOCK_DIAGONAL).forEach(center) {
         if (it.getSquaredDistance(this@searchBlocksInRadius) > radiusSquared) {
             return@forEach
         }
 
+        val state = cursor.getBlockState(it)
+
         if (filter(it, state)) {
             yield(Pair(it.toImmutable(), state))
         }
@@ -311,18 +320,16 @@ fun BlockPos.searchLayer(layers: Int, vararg directions: Direction): Sequence<In
  * **Squared Distance** to **BlockPos**
  */
 fun BlockPos.getSphere(radius: Float): Sequence<DoubleObjectPair<BlockPos>> = sequence {
-    val radiusSq = radius * radius
+    val sphere = SphereOffsets.of(radius)
 
-    searchBlocksInCuboid(MathHelper.ceil(radius)).forEach {
-        val distanceSq = getSquaredDistance(it)
-        if (distanceSq <= radiusSq) {
-            yield(DoubleObjectPair.of(distanceSq, it.toImmutable()))
-        }
+    for (i in 0 until sphere.size) {
+        val pos = BlockPos(x + sphere.offsetX(i), y + sphere.offsetY(i), z + sphere.offsetZ(i))
+        yield(DoubleObjectPair.of(sphere.distanceSq(i).toDouble(), pos))
     }
 }
 
 fun BlockPos.getSortedSphere(radius: Float): Array<BlockPos> {
-    return getSphere(radius).toList().sortedBy { it.firstDouble() }.mapArray { it.second() }
+    return SphereOffsets.of(radius).toPositions(this)
 }
 
 /**
@@ -427,8 +434,10 @@ inline fun Box.collideBlockIntersects(
     checkCollisionShape: Boolean = true,
     isCorrectBlock: (Block?) -> Boolean
 ): Boolean {
+    val cursor = WorldCursor(mc.world ?: return false)
+
     collidingRegion.forEach { blockPos ->
-        val blockState = blockPos.getState() ?: return@forEach
+        val blockState = cursor.getBlockState(blockPos)
         val block = blockState.block ?: return@forEach
 
         if (!isCorrectBlock(block)) {
@@ -20,18 +20,24 @@ package net.ccbluex.liquidbounce.utils.block
 
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet
 import kotlinx.coroutines.*
-import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.channels.Channel
 import net.ccbluex.liquidbounce.event.EventListener
 import net.ccbluex.liquidbounce.event.events.*
 import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.features.module.MinecraftShortcuts
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
 import net.ccbluex.liquidbounce.utils.client.logger
+import net.ccbluex.liquidbounce.utils.kotlin.SampleRingBuffer
 import net.ccbluex.liquidbounce.utils.kotlin.getValue
 import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.ChunkPos
+import net.minecraft.world.chunk.ChunkSection
+import net.minecraft.world.chunk.IdListPalette
 import net.minecraft.world.chunk.WorldChunk
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
 
 object ChunkScanner : EventListener, MinecraftShortcuts {
 
@@ -67,12 +73,7 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
 
     @Suppress("unused")
     private val blockChangeEvent = handler<BlockChangeEvent> { event ->
-        ChunkScannerThread.enqueueChunkUpdate(
-            ChunkScannerThread.UpdateRequest.BlockUpdateEvent(
-                event.blockPos,
-                event.newState
-            )
-        )
+        ChunkScannerThread.enqueueChunkUpdate(ChunkScannerThread.UpdateRequest.BlockUpdateEvent(event.blockPos))
     }
 
     @Suppress("unused")
@@ -82,6 +83,29 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
         loadedChunks.clear()
     }
 
+    @Suppress("unused")
+    private val metricsHandler = handler<GameTickEvent> {
+        if (!ModuleDebug.running) {
+            return@handler
+        }
+
+        val metrics = ChunkScannerThread.metrics()
+        ModuleDebug.debugParameter(this, "Queue Depth", metrics.queueDepth)
+        ModuleDebug.debugParameter(this, "Coalesced", metrics.coalesced)
+        ModuleDebug.debugParameter(this, "Overflows", metrics.overflows)
+        ModuleDebug.debugParameter(this, "Processed", metrics.processedChunks)
+        ModuleDebug.debugParameter(
+            this,
+            "Wait p50/p99",
+            "${metrics.waitLatencyP50 / 1000}us / ${metrics.waitLatencyP99 / 1000}us"
+        )
+        ModuleDebug.debugParameter(
+            this,
+            "Scan p50/p99",
+            "${metrics.scanLatencyP50 / 1000}us / ${metrics.scanLatencyP99 / 1000}us"
+        )
+    }
+
     fun subscribe(newSubscriber: BlockChangeSubscriber) {
         check(newSubscriber !in this.subscribers) {
             "Subscriber ${newSubscriber.javaClass.simpleName} already registered"
@@ -116,22 +140,37 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
 
     object ChunkScannerThread {
 
+        private const val MAX_PENDING_CHUNKS = 8192
+        private const val LATENCY_SAMPLES = 1024
+        private const val SECTION_VOLUME = 16 * 16 * 16
+
+        private val parallelism = (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(2)
+
         /**
          * When the first request comes in, the dispatcher and the scope will be initialized,
          * and its parallelism cannot be modified
          */
-        private val dispatcher = Dispatchers.Default
-            .limitedParallelism((Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(2))
+        private val dispatcher = Dispatchers.Default.limitedParallelism(parallelism)
+
+        private val scope = CoroutineScope(dispatcher + SupervisorJob())
+
+        private val queue = ChunkUpdateQueue(MAX_PENDING_CHUNKS)
+
+        /**
+         * Wakes up an idle worker, conflated as the workers drain the [queue] anyway
+         */
+        private val signal = Channel<Unit>(Channel.CONFLATED)
 
         /**
-         * The parent job for the current client world.
-         * All children will be cancelled on [WorldChangeEvent].
+         * Incremented on [WorldChangeEvent], scans of an older generation are aborted.
          */
-        private val worldJob = SupervisorJob()
+        @Volatile
+        private var generation = 0
 
-        private val scope = CoroutineScope(dispatcher + worldJob)
+        private val waitLatency = SampleRingBuffer(LATENCY_SAMPLES)
+        private val scanLatency = SampleRingBuffer(LATENCY_SAMPLES)
 
-        private val eventFlow = MutableSharedFlow<UpdateRequest>()
+        private val processedChunks = AtomicLong()
 
         /**
          * Shared cache for [scope]
@@ -139,30 +178,31 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
         private val mutable by ThreadLocal.withInitial(BlockPos::Mutable)
 
         /**
-         * A standalone [Job] to dispatch all [UpdateRequest] from [eventFlow]
+         * Each worker processes one chunk at a time, which bounds the amount of concurrent scans to [parallelism]
          */
-        private val collectorJob = scope.launch(Job()) {
-            eventFlow.collect { chunkUpdate ->
-                // Discard current request when world is null
-                if (mc.world == null) {
-                    delay(50L)
-                    return@collect
-                }
+        @Suppress("unused")
+        private val workers = List(parallelism) {
+            scope.launch {
+                while (isActive) {
+                    val pendingChunk = queue.poll()
 
-                // Process the update request
-                launch {
-                    try {
-                        when (chunkUpdate) {
-                            is UpdateRequest.ChunkUpdateRequest -> scanChunk(chunkUpdate)
+                    if (pendingChunk == null) {
+                        signal.receive()
+                        continue
+                    }
 
-                            is UpdateRequest.ChunkUnloadRequest -> subscribers.forEach {
-                                it.clearChunk(chunkUpdate.x, chunkUpdate.z)
-                            }
+                    // Another worker might be able to take the next chunk
+                    signal.trySend(Unit)
 
-                            is UpdateRequest.BlockUpdateEvent -> subscribers.forEach {
-                                it.recordBlock(chunkUpdate.blockPos, chunkUpdate.newState, cleared = false)
-                            }
-                        }
+                    // Discard current request when world is null
+                    if (mc.world == null) {
+                        continue
+                    }
+
+                    try {
+                        process(pendingChunk)
+                    } catch (e: CancellationException) {
+                        throw e
                     } catch (e: Throwable) {
                         logger.warn("Chunk update error", e)
                     }
@@ -171,40 +211,73 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
         }
 
         fun enqueueChunkUpdate(request: UpdateRequest) {
-            scope.launch {
-                eventFlow.emit(request)
+            if (queue.offer(request)) {
+                signal.trySend(Unit)
             }
         }
 
         /**
-         * Cancel all existing enqueue(emit) jobs and scanner jobs
+         * Drop all pending requests and abort running scans
          */
         fun cancelCurrentJobs() {
-            worldJob.cancelChildren()
+            generation++
+            queue.clear()
         }
 
-        /**
-         * Scans the chunks for a block
-         */
-        private suspend fun scanChunk(request: UpdateRequest.ChunkUpdateRequest) {
-            val chunk = request.chunk
+        private fun process(pendingChunk: ChunkUpdateQueue.PendingChunk) {
+            val generation = this.generation
+            val start = System.nanoTime()
+            val x = ChunkPos.getPackedX(pendingChunk.chunkPos)
+            val z = ChunkPos.getPackedZ(pendingChunk.chunkPos)
 
-            if (chunk.isEmpty) {
-                return
+            synchronized(waitLatency) {
+                waitLatency.record(start - pendingChunk.enqueuedAt)
             }
 
-            val start = System.nanoTime()
+            if (pendingChunk.unload) {
+                subscribers.forEach { it.clearChunk(x, z) }
+            }
 
-            val currentSubscriber = request.singleSubscriber?.let { listOf(it) } ?: subscribers
+            val chunk = pendingChunk.chunk
+            if (chunk != null) {
+                if (pendingChunk.fullScan) {
+                    scanChunk(chunk, subscribers, generation)
+                } else {
+                    pendingChunk.singleSubscribers?.let { scanChunk(chunk, it, generation) }
+                }
+            }
+
+            pendingChunk.changedPositions?.let { positions ->
+                val world = mc.world ?: return@let
+                val pos = mutable
+                val iterator = positions.longIterator()
 
-            when (currentSubscriber.size) {
-                0 -> return
-                1 -> currentSubscriber.first().chunkUpdate(chunk.pos.x, chunk.pos.z)
-                else -> currentSubscriber.map {
-                    scope.launch { it.chunkUpdate(chunk.pos.x, chunk.pos.z) }
-                }.joinAll()
+                while (iterator.hasNext() && generation == this.generation) {
+                    pos.set(iterator.nextLong())
+                    val state = world.getBlockState(pos)
+                    subscribers.forEach { it.recordBlock(pos, state, cleared = false) }
+                }
             }
 
+            val duration = System.nanoTime() - start
+            synchronized(scanLatency) {
+                scanLatency.record(duration)
+            }
+            processedChunks.incrementAndGet()
+
+            logger.debug("Processing chunk ($x, $z) took ${duration / 1000}us")
+        }
+
+        /**
+         * Scans the chunks for a block
+         */
+        private fun scanChunk(chunk: WorldChunk, currentSubscriber: Collection<BlockChangeSubscriber>, generation: Int) {
+            if (chunk.isEmpty || currentSubscriber.isEmpty()) {
+                return
+            }
+
+            currentSubscriber.forEach { it.chunkUpdate(chunk.pos.x, chunk.pos.z) }
+
             // Contains all subscriber that want recordBlock called on a chunk update
             val subscribersForRecordBlock = currentSubscriber.filter {
                 it.shouldCallRecordBlockOnChunkUpdate
@@ -214,45 +287,141 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
                 return
             }
 
-            val startX = chunk.pos.startX
-            val startZ = chunk.pos.startZ
+            val unfiltered = subscribersForRecordBlock.filter { it.chunkScanFilter == null }.toTypedArray()
+            val filtered = subscribersForRecordBlock.filter { it.chunkScanFilter != null }.toTypedArray()
 
             /**
              * @see WorldChunk.getBlockState
              */
-            (0..chunk.highestNonEmptySection).map { sectionIndex ->
-                scope.launch {
-                    val section = chunk.getSection(sectionIndex)
-                    for (sectionY in 0..15) {
-                        // index == (y >> 4) - (bottomY >> 4)
-                        val y = (sectionIndex + (chunk.bottomY shr 4)) shl 4 or sectionY
-                        for (x in 0..15) {
-                            for (z in 0..15) {
-                                val blockState = section.getBlockState(x, sectionY, z)
-                                val pos = mutable.set(startX or x, y, startZ or z)
-                                subscribersForRecordBlock.forEach { it.recordBlock(pos, blockState, cleared = true) }
-                            }
-                        }
+            for (sectionIndex in 0..chunk.highestNonEmptySection) {
+                // The world changed, the result would be discarded anyway
+                if (generation != this.generation) {
+                    return
+                }
+
+                val section = chunk.getSection(sectionIndex)
+                // index == (y >> 4) - (bottomY >> 4)
+                val sectionBottomY = (sectionIndex + (chunk.bottomY shr 4)) shl 4
+
+                if (unfiltered.isNotEmpty()) {
+                    scanSection(chunk.pos, sectionBottomY, section, unfiltered)
+                }
+
+                for (subscriber in filtered) {
+                    scanSectionFiltered(chunk.pos, sectionBottomY, section, subscriber)
+                }
+            }
+        }
+
+        private fun scanSection(
+            chunkPos: ChunkPos,
+            sectionBottomY: Int,
+            section: ChunkSection,
+            subscribers: Array<BlockChangeSubscriber>
+        ) {
+            val startX = chunkPos.startX
+            val startZ = chunkPos.startZ
+            val pos = mutable
+
+            for (sectionY in 0..15) {
+                val y = sectionBottomY or sectionY
+                for (x in 0..15) {
+                    for (z in 0..15) {
+                        val blockState = section.getBlockState(x, sectionY, z)
+                        pos.set(startX or x, y, startZ or z)
+                        subscribers.forEach { it.recordBlock(pos, blockState, cleared = true) }
                     }
                 }
-            }.joinAll()
+            }
+        }
+
+        /**
+         * Uses the palette of the section to skip it entirely if no state matches
+         * [BlockChangeSubscriber.chunkScanFilter] and otherwise only visits the matching positions.
+         */
+        private fun scanSectionFiltered(
+            chunkPos: ChunkPos,
+            sectionBottomY: Int,
+            section: ChunkSection,
+            subscriber: BlockChangeSubscriber
+        ) {
+            val filter = subscriber.chunkScanFilter ?: return
+            if (section.isEmpty && !filter(Blocks.AIR.defaultState)) {
+                return
+            }
+
+            val data = section.blockStateContainer.data
+            val palette = data.palette()
+            val storage = data.storage()
+
+            // The global palette contains every state, there is nothing to gain from checking it first
+            val matchingIds = if (palette is IdListPalette) {
+                null
+            } else {
+                BooleanArray(palette.size) { id -> filter(palette.get(id)) }.takeIf { ids -> ids.any { it } }
+                    ?: return
+            }
+
+            val startX = chunkPos.startX
+            val startZ = chunkPos.startZ
+            val pos = mutable
+
+            // Index layout of PalettedContainer.PaletteProvider.BLOCK_STATE: (y << 4 | z) << 4 | x
+            for (index in 0 until SECTION_VOLUME) {
+                val id = storage.get(index)
+
+                // The palette grows in place when the client thread sets a block, so newer ids are checked directly
+                val blockState = if (matchingIds == null || id >= matchingIds.size) {
+                    palette.get(id).takeIf(filter) ?: continue
+                } else if (matchingIds[id]) {
+                    palette.get(id)
+                } else {
+                    continue
+                }
 
-            logger.debug("Scanning chunk (${chunk.pos.x}, ${chunk.pos.z}) took ${(System.nanoTime() - start) / 1000}us")
+                pos.set(startX or (index and 15), sectionBottomY or (index ushr 8), startZ or (index ushr 4 and 15))
+                subscriber.recordBlock(pos, blockState, cleared = true)
+            }
         }
 
+        /**
+         * Returns the current metrics of the scanner, latencies are in nanoseconds.
+         */
+        fun metrics() = Metrics(
+            queueDepth = queue.size,
+            coalesced = queue.coalesced,
+            overflows = queue.overflows,
+            processedChunks = processedChunks.get(),
+            waitLatencyP50 = synchronized(waitLatency) { waitLatency.percentile(0.5) },
+            waitLatencyP99 = synchronized(waitLatency) { waitLatency.percentile(0.99) },
+            scanLatencyP50 = synchronized(scanLatency) { scanLatency.percentile(0.5) },
+            scanLatencyP99 = synchronized(scanLatency) { scanLatency.percentile(0.99) }
+        )
+
         fun stopThread() {
-            worldJob.cancel()
-            collectorJob.cancel()
+            scope.cancel()
+            queue.clear()
             logger.info("Stopped Chunk Scanner Thread!")
         }
 
+        data class Metrics(
+            val queueDepth: Int,
+            val coalesced: Long,
+            val overflows: Long,
+            val processedChunks: Long,
+            val waitLatencyP50: Long,
+            val waitLatencyP99: Long,
+            val scanLatencyP50: Long,
+            val scanLatencyP99: Long
+        )
+
         sealed interface UpdateRequest {
             class ChunkUpdateRequest(val chunk: WorldChunk, val singleSubscriber: BlockChangeSubscriber? = null) :
                 UpdateRequest
 
             class ChunkUnloadRequest(val x: Int, val z: Int) : UpdateRequest
 
-            class BlockUpdateEvent(val blockPos: BlockPos, val newState: BlockState) : UpdateRequest
+            class BlockUpdateEvent(val blockPos: BlockPos) : UpdateRequest
         }
     }
 
@@ -264,6 +433,15 @@ object ChunkScanner : EventListener, MinecraftShortcuts {
         val shouldCallRecordBlockOnChunkUpdate: Boolean
             get() = true
 
+        /**
+         * Block states [recordBlock] has to be called for on chunk updates, null if it needs all of them.
+         *
+         * The scanner checks the palette of each section first and skips sections without any matching state,
+         * so the filter has to accept every state the subscriber might want to record.
+         */
+        val chunkScanFilter: ((BlockState) -> Boolean)?
+            get() = null
+
         /**
          * Registers a block update and asks the subscriber to make a decision about what should be done.
          * This method must be **thread-safe**.
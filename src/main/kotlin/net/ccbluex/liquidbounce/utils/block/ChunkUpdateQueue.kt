@@ -0,0 +1,189 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet
+import net.ccbluex.liquidbounce.utils.block.ChunkScanner.BlockChangeSubscriber
+import net.ccbluex.liquidbounce.utils.block.ChunkScanner.ChunkScannerThread.UpdateRequest
+import net.minecraft.util.math.ChunkPos
+import net.minecraft.world.chunk.WorldChunk
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A bounded multi-producer queue of [UpdateRequest]s which holds at most one [PendingChunk] per chunk.
+ *
+ * Requests for a chunk that is already queued are merged into its [PendingChunk]:
+ * - a full rescan absorbs single subscriber scans and block updates of the chunk
+ * - an unload drops everything queued for the chunk before it
+ * - repeated block updates of the same position are only processed once
+ *
+ * Producers are called from the client thread, so [offer] never waits for the consumers.
+ * [capacity] is a soft limit: since a chunk is queued at most once, the queue cannot grow beyond the chunks
+ * which have been loaded or unloaded, and dropping a request would leave stale blocks behind.
+ * Requests for new chunks beyond it are counted as [overflows].
+ */
+internal class ChunkUpdateQueue(private val capacity: Int) {
+
+    private val lock = ReentrantLock()
+
+    private val pending = Long2ObjectLinkedOpenHashMap<PendingChunk>()
+
+    /**
+     * Amount of requests which have been merged into an already pending chunk
+     */
+    @Volatile
+    var coalesced = 0L
+        private set
+
+    /**
+     * Amount of requests which have been queued for a new chunk although the queue was full
+     */
+    @Volatile
+    var overflows = 0L
+        private set
+
+    val size: Int
+        get() = lock.withLock { pending.size }
+
+    /**
+     * @return true if the request created a new pending chunk, false if it was merged
+     */
+    fun offer(request: UpdateRequest): Boolean = lock.withLock {
+        val key = when (request) {
+            is UpdateRequest.ChunkUpdateRequest -> request.chunk.pos.toLong()
+            is UpdateRequest.ChunkUnloadRequest -> ChunkPos.toLong(request.x, request.z)
+            is UpdateRequest.BlockUpdateEvent -> ChunkPos.toLong(request.blockPos.x shr 4, request.blockPos.z shr 4)
+        }
+
+        var entry = pending.get(key)
+        val created = entry == null
+
+        if (entry == null) {
+            if (pending.size >= capacity) {
+                overflows++
+            }
+
+            entry = PendingChunk(key)
+            pending.put(key, entry)
+        }
+
+        if (entry.merge(request)) {
+            coalesced++
+        }
+
+        created
+    }
+
+    /**
+     * Removes the chunk which has been pending for the longest time.
+     */
+    fun poll(): PendingChunk? = lock.withLock {
+        if (pending.isEmpty()) {
+            return null
+        }
+
+        pending.removeFirst()
+    }
+
+    fun clear() = lock.withLock {
+        pending.clear()
+    }
+
+    /**
+     * All queued work of a single chunk, processed in the order unload, scans, block updates.
+     */
+    class PendingChunk(val chunkPos: Long) {
+
+        val enqueuedAt = System.nanoTime()
+
+        var unload = false
+            private set
+
+        /**
+         * The chunk to scan, if a scan is pending
+         */
+        var chunk: WorldChunk? = null
+            private set
+
+        /**
+         * If true, [chunk] is scanned for all subscribers, otherwise only for [singleSubscribers]
+         */
+        var fullScan = false
+            private set
+
+        var singleSubscribers: MutableSet<BlockChangeSubscriber>? = null
+            private set
+
+        /**
+         * Positions which changed since the request. Their current state is read when the chunk is processed,
+         * so multiple changes of the same block result in a single update.
+         *
+         * These are still needed after a full rescan, as the rescan only records blocks and never untracks them.
+         */
+        var changedPositions: LongLinkedOpenHashSet? = null
+            private set
+
+        /**
+         * Applies [request] to this entry.
+         *
+         * @return true if the request was (partially) absorbed by work which was already pending
+         */
+        fun merge(request: UpdateRequest): Boolean = when (request) {
+            is UpdateRequest.ChunkUpdateRequest -> {
+                chunk = request.chunk
+                val subscriber = request.singleSubscriber
+
+                when {
+                    fullScan -> true
+                    subscriber != null -> !getOrCreateSubscribers().add(subscriber)
+                    else -> {
+                        fullScan = true
+                        val absorbed = singleSubscribers?.isNotEmpty() == true
+                        singleSubscribers = null
+                        absorbed
+                    }
+                }
+            }
+
+            is UpdateRequest.ChunkUnloadRequest -> {
+                val absorbed = chunk != null || changedPositions?.isNotEmpty() == true
+
+                unload = true
+                chunk = null
+                fullScan = false
+                singleSubscribers = null
+                changedPositions = null
+
+                absorbed
+            }
+
+            is UpdateRequest.BlockUpdateEvent -> {
+                val positions = changedPositions ?: LongLinkedOpenHashSet().also { changedPositions = it }
+                !positions.add(request.blockPos.asLong()) || fullScan
+            }
+        }
+
+        private fun getOrCreateSubscribers() =
+            singleSubscribers ?: LinkedHashSet<BlockChangeSubscriber>().also { singleSubscribers = it }
+
+    }
+
+}
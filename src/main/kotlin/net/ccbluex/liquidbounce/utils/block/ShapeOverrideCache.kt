@@ -0,0 +1,195 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import net.ccbluex.liquidbounce.event.EventListener
+import net.ccbluex.liquidbounce.event.events.BlockChangeEvent
+import net.ccbluex.liquidbounce.event.events.BlockShapeEvent
+import net.ccbluex.liquidbounce.event.events.GameTickEvent
+import net.ccbluex.liquidbounce.event.events.ValueChangedEvent
+import net.ccbluex.liquidbounce.event.events.WorldChangeEvent
+import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
+import net.minecraft.block.Block
+import net.minecraft.block.BlockState
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.shape.VoxelShape
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Memoized [BlockShapeEvent] overrides.
+ *
+ * Listeners whose override only depends on the block state and the position (and the world around it) register
+ * it with [shapeOverride] instead of handling [BlockShapeEvent]. The collision sweep of the player, simulated
+ * players and scaffold or pathing simulations ask for the same blocks many times per tick, each position is only
+ * evaluated once per tick though.
+ *
+ * Results are cached per thread, keyed by the packed position and checked against the state id.
+ * The cache is invalidated every tick, on block changes and whenever a value (e.g. a module state) changes.
+ */
+object ShapeOverrideCache : EventListener {
+
+    fun interface ShapeOverride {
+        /**
+         * @return the shape which replaces the collision shape of [state] at [pos], or null to keep it
+         */
+        fun override(state: BlockState, pos: BlockPos): VoxelShape?
+    }
+
+    private class RegisteredOverride(val owner: EventListener, val override: ShapeOverride)
+
+    private class CachedShape(var stateId: Int, var shape: VoxelShape?)
+
+    private class ThreadCache(var generation: Int) {
+        val shapes = Long2ObjectOpenHashMap<CachedShape>()
+    }
+
+    private val overrides = CopyOnWriteArrayList<RegisteredOverride>()
+
+    @Volatile
+    private var generation = 0
+
+    private val caches = ThreadLocal.withInitial { ThreadCache(generation) }
+
+    /**
+     * Debug counters, not synchronized as shapes are requested from multiple threads
+     */
+    private var evaluatedShapes = 0
+    private var cachedShapes = 0
+
+    fun register(owner: EventListener, override: ShapeOverride) {
+        overrides += RegisteredOverride(owner, override)
+        invalidate()
+    }
+
+    fun unregister(owner: EventListener) {
+        overrides.removeIf { it.owner === owner }
+        invalidate()
+    }
+
+    fun invalidate() {
+        generation++
+    }
+
+    /**
+     * Handles [BlockShapeEvent] only while the owner of at least one override is running,
+     * so the event is not called at all otherwise
+     */
+    private object ShapeHandler : EventListener {
+
+        override val running: Boolean
+            get() = ShapeOverrideCache.running && overrides.any { it.owner.running }
+
+        @Suppress("unused")
+        private val shapeHandler = handler<BlockShapeEvent> { event ->
+            val shape = cachedShape(event.state, event.pos)
+
+            if (shape != null) {
+                event.shape = shape
+            }
+        }
+
+    }
+
+    init {
+        ShapeHandler
+    }
+
+    private fun cachedShape(state: BlockState, pos: BlockPos): VoxelShape? {
+        val cache = caches.get()
+
+        if (cache.generation != generation) {
+            cache.generation = generation
+            cache.shapes.clear()
+        }
+
+        val stateId = Block.getRawIdFromState(state)
+        val key = pos.asLong()
+        val cached = cache.shapes.get(key)
+
+        if (cached != null && cached.stateId == stateId) {
+            cachedShapes++
+            return cached.shape
+        }
+
+        evaluatedShapes++
+        val shape = evaluate(state, pos)
+
+        if (cached != null) {
+            cached.stateId = stateId
+            cached.shape = shape
+        } else {
+            cache.shapes.put(key, CachedShape(stateId, shape))
+        }
+
+        return shape
+    }
+
+    /**
+     * Applies the overrides of all running owners, the last one wins like with event handlers
+     */
+    private fun evaluate(state: BlockState, pos: BlockPos): VoxelShape? {
+        var shape: VoxelShape? = null
+
+        for (registered in overrides) {
+            if (registered.owner.running) {
+                registered.override.override(state, pos)?.let { shape = it }
+            }
+        }
+
+        return shape
+    }
+
+    @Suppress("unused")
+    private val tickHandler = handler<GameTickEvent> {
+        if (ModuleDebug.running) {
+            ModuleDebug.debugParameter(this, "Evaluated", evaluatedShapes)
+            ModuleDebug.debugParameter(this, "Cached", cachedShapes)
+        }
+
+        evaluatedShapes = 0
+        cachedShapes = 0
+        invalidate()
+    }
+
+    @Suppress("unused")
+    private val blockChangeHandler = handler<BlockChangeEvent> {
+        invalidate()
+    }
+
+    @Suppress("unused")
+    private val valueChangedHandler = handler<ValueChangedEvent> {
+        invalidate()
+    }
+
+    @Suppress("unused")
+    private val worldChangeHandler = handler<WorldChangeEvent> {
+        invalidate()
+    }
+
+}
+
+/**
+ * Overrides collision shapes with a function of the block state and position, see [ShapeOverrideCache].
+ * The override is only applied while this listener is running.
+ */
+fun EventListener.shapeOverride(override: ShapeOverrideCache.ShapeOverride) {
+    ShapeOverrideCache.register(this, override)
+}
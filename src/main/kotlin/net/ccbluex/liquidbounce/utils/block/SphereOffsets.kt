@@ -0,0 +1,152 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import it.unimi.dsi.fastutil.ints.IntArrays
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.MathHelper
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Offsets of all blocks whose squared distance to the origin is at most `radius * radius`,
+ * sorted by that distance. Offsets with the same distance keep the x-y-z order of a cuboid scan.
+ *
+ * Tables are immutable and cached per radius, use [of] to get one.
+ */
+class SphereOffsets private constructor(val radius: Float) {
+
+    /**
+     * Offsets packed with [pack]
+     */
+    private val offsets: IntArray
+
+    /**
+     * Squared distance of each offset to the origin, ascending
+     */
+    private val distancesSq: IntArray
+
+    init {
+        val bound = MathHelper.ceil(radius)
+        require(bound <= MAX_RADIUS) { "Radius $radius is too large" }
+
+        val radiusSq = radius * radius
+        val packed = ArrayList<Int>()
+
+        for (z in -bound..bound) {
+            for (y in -bound..bound) {
+                for (x in -bound..bound) {
+                    if (x * x + y * y + z * z <= radiusSq) {
+                        packed.add(pack(x, y, z))
+                    }
+                }
+            }
+        }
+
+        val unsorted = packed.toIntArray()
+        val order = IntArray(unsorted.size) { it }
+
+        // Merge sort is stable, so equal distances keep the scan order
+        IntArrays.mergeSort(order) { a, b -> distanceSq(unsorted[a]).compareTo(distanceSq(unsorted[b])) }
+
+        offsets = IntArray(order.size) { unsorted[order[it]] }
+        distancesSq = IntArray(offsets.size) { distanceSq(offsets[it]) }
+    }
+
+    val size: Int
+        get() = offsets.size
+
+    fun offsetX(index: Int) = unpackX(offsets[index])
+    fun offsetY(index: Int) = unpackY(offsets[index])
+    fun offsetZ(index: Int) = unpackZ(offsets[index])
+
+    fun distanceSq(index: Int) = distancesSq[index]
+
+    /**
+     * Amount of offsets with a squared distance of at most [maxDistanceSq], so a smaller sphere
+     * can be iterated from the same table.
+     */
+    fun countWithin(maxDistanceSq: Double): Int {
+        var low = 0
+        var high = distancesSq.size
+
+        while (low < high) {
+            val mid = (low + high) ushr 1
+
+            if (distancesSq[mid] <= maxDistanceSq) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+
+        return low
+    }
+
+    /**
+     * Calls [action] with every position of the sphere around [center], nearest first.
+     * [mutable] is reused for every position, copy it with [BlockPos.toImmutable] to keep it.
+     */
+    inline fun forEach(
+        center: BlockPos,
+        mutable: BlockPos.Mutable = BlockPos.Mutable(),
+        action: (BlockPos.Mutable) -> Unit
+    ) {
+        for (i in 0 until size) {
+            mutable.set(center.x + offsetX(i), center.y + offsetY(i), center.z + offsetZ(i))
+            action(mutable)
+        }
+    }
+
+    /**
+     * Immutable positions of the sphere around [center], nearest first.
+     */
+    fun toPositions(center: BlockPos = BlockPos.ORIGIN): Array<BlockPos> = Array(size) {
+        BlockPos(center.x + offsetX(it), center.y + offsetY(it), center.z + offsetZ(it))
+    }
+
+    companion object {
+
+        private const val BITS = 10
+        private const val MASK = (1 shl BITS) - 1
+        private const val BIAS = 1 shl (BITS - 1)
+
+        const val MAX_RADIUS = BIAS - 1
+
+        private val cache = ConcurrentHashMap<Float, SphereOffsets>()
+
+        fun of(radius: Float): SphereOffsets = cache.computeIfAbsent(radius, ::SphereOffsets)
+
+        private fun pack(x: Int, y: Int, z: Int) =
+            (x + BIAS) or ((y + BIAS) shl BITS) or ((z + BIAS) shl (BITS * 2))
+
+        private fun unpackX(packed: Int) = (packed and MASK) - BIAS
+        private fun unpackY(packed: Int) = ((packed ushr BITS) and MASK) - BIAS
+        private fun unpackZ(packed: Int) = ((packed ushr (BITS * 2)) and MASK) - BIAS
+
+        private fun distanceSq(packed: Int): Int {
+            val x = unpackX(packed)
+            val y = unpackY(packed)
+            val z = unpackZ(packed)
+
+            return x * x + y * y + z * z
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.ChunkSectionPos
+import net.minecraft.world.World
+import net.minecraft.world.chunk.Chunk
+import net.minecraft.world.chunk.ChunkStatus
+import net.minecraft.world.chunk.PalettedContainer
+
+/**
+ * Reads block states of a [world] while keeping the chunk and section of the last position.
+ *
+ * Consecutive positions in the same section skip the chunk lookup, the section lookup and the bounds checks,
+ * so scanning a cuboid does one chunk lookup per section instead of one per block. [forEachInSectionOrder]
+ * walks a cuboid section by section to make the most of it.
+ *
+ * A cursor is cheap to create and must only be used by a single thread. With [snapshot], every section is
+ * copied on its first access, so changes the client thread makes later do not show up halfway through a scan.
+ * The copy itself is not synchronized with the client thread, because the lock of [PalettedContainer] only
+ * detects concurrent access and fails on it. A section which is modified while it is copied can therefore
+ * be inconsistent, the block update that follows lets consumers correct that.
+ */
+class WorldCursor(private val world: World, private val snapshot: Boolean = false) {
+
+    private var chunkX = Int.MIN_VALUE
+    private var chunkZ = Int.MIN_VALUE
+    private var chunk: Chunk? = null
+
+    private var sectionY = Int.MIN_VALUE
+
+    /**
+     * States of the current section, null if the section is empty
+     */
+    private var states: PalettedContainer<BlockState>? = null
+
+    private val snapshots by lazy { Long2ObjectOpenHashMap<PalettedContainer<BlockState>?>() }
+
+    /**
+     * Same as [World.getBlockState], unloaded chunks and positions outside the world are void air.
+     */
+    fun getBlockState(x: Int, y: Int, z: Int): BlockState {
+        if (world.isOutOfHeightLimit(y)) {
+            return VOID_AIR
+        }
+
+        val chunkX = x shr 4
+        val chunkZ = z shr 4
+
+        if (chunkX != this.chunkX || chunkZ != this.chunkZ) {
+            this.chunkX = chunkX
+            this.chunkZ = chunkZ
+            this.chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.FULL, false)
+            this.sectionY = Int.MIN_VALUE
+        }
+
+        val chunk = this.chunk ?: return VOID_AIR
+        val sectionY = y shr 4
+
+        if (sectionY != this.sectionY) {
+            this.sectionY = sectionY
+            this.states = if (snapshot) {
+                snapshotOf(chunk, chunkX, sectionY, chunkZ, y)
+            } else {
+                sectionStates(chunk, y)
+            }
+        }
+
+        val states = this.states ?: return AIR
+
+        return states.get(x and 15, y and 15, z and 15)
+    }
+
+    fun getBlockState(pos: BlockPos) = getBlockState(pos.x, pos.y, pos.z)
+
+    private fun sectionStates(chunk: Chunk, y: Int): PalettedContainer<BlockState>? {
+        val section = chunk.getSection(chunk.getSectionIndex(y))
+
+        return if (section.isEmpty) null else section.blockStateContainer
+    }
+
+    private fun snapshotOf(
+        chunk: Chunk,
+        chunkX: Int,
+        sectionY: Int,
+        chunkZ: Int,
+        y: Int
+    ): PalettedContainer<BlockState>? {
+        val key = ChunkSectionPos.asLong(chunkX, sectionY, chunkZ)
+
+        if (snapshots.containsKey(key)) {
+            return snapshots.get(key)
+        }
+
+        // Not synchronized, see the class documentation
+        return sectionStates(chunk, y)?.copy().also { snapshots.put(key, it) }
+    }
+
+    /**
+     * Calls [action] for every position from [from] to [to] (inclusive), section by section.
+     * Within a section the order is x, then z, then y. [action] gets a reused [BlockPos.Mutable].
+     */
+    @Suppress("NestedBlockDepth")
+    inline fun forEachInSectionOrder(
+        from: BlockPos,
+        to: BlockPos,
+        action: (BlockPos.Mutable, BlockState) -> Unit
+    ) {
+        val minX = minOf(from.x, to.x)
+        val minY = minOf(from.y, to.y)
+        val minZ = minOf(from.z, to.z)
+        val maxX = maxOf(from.x, to.x)
+        val maxY = maxOf(from.y, to.y)
+        val maxZ = maxOf(from.z, to.z)
+
+        val mutable = BlockPos.Mutable()
+
+        for (sectionX in (minX shr 4)..(maxX shr 4)) {
+            for (sectionZ in (minZ shr 4)..(maxZ shr 4)) {
+                for (sectionY in (minY shr 4)..(maxY shr 4)) {
+                    for (y in maxOf(minY, sectionY shl 4)..minOf(maxY, (sectionY shl 4) + 15)) {
+                        for (z in maxOf(minZ, sectionZ shl 4)..minOf(maxZ, (sectionZ shl 4) + 15)) {
+                            for (x in maxOf(minX, sectionX shl 4)..minOf(maxX, (sectionX shl 4) + 15)) {
+                                action(mutable.set(x, y, z), getBlockState(x, y, z))
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private companion object {
+        val AIR: BlockState = Blocks.AIR.defaultState
+        val VOID_AIR: BlockState = Blocks.VOID_AIR.defaultState
+    }
+
+}
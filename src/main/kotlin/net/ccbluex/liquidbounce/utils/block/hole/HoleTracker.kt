@@ -23,7 +23,7 @@ import net.ccbluex.liquidbounce.features.module.MinecraftShortcuts
 import net.ccbluex.liquidbounce.utils.block.ChunkScanner
 import net.ccbluex.liquidbounce.utils.block.DIRECTIONS_EXCLUDING_UP
 import net.ccbluex.liquidbounce.utils.block.Region
-import net.ccbluex.liquidbounce.utils.block.getState
+import net.ccbluex.liquidbounce.utils.block.WorldCursor
 import net.ccbluex.liquidbounce.utils.kotlin.getValue
 import net.minecraft.block.Block
 import net.minecraft.block.BlockState
@@ -39,7 +39,11 @@ private const val BREAKABLE = 1.toByte()
 
 // BlockState types
 private typealias State = Byte
-private typealias BlockStateBuffer = Long2ByteOpenHashMap
+
+/**
+ * Classified states of the positions around a region, read through a [WorldCursor] as the positions are close.
+ */
+private class BlockStateBuffer(capacity: Int, val cursor: WorldCursor) : Long2ByteOpenHashMap(capacity)
 
 object HoleTracker : ChunkScanner.BlockChangeSubscriber, MinecraftShortcuts {
 
@@ -75,9 +79,12 @@ object HoleTracker : ChunkScanner.BlockChangeSubscriber, MinecraftShortcuts {
         holes.removeIf { it.positions.intersects(region) }
     }
 
+    /**
+     * Runs on the chunk scanner thread, so the region is read from snapshots of its sections.
+     */
     @Suppress("CognitiveComplexMethod", "LongMethod")
     fun Region.cachedUpdate() {
-        val buffer = BlockStateBuffer(volume)
+        val buffer = BlockStateBuffer(volume, WorldCursor(world, snapshot = true))
 
         val mutableLocal = BlockPos.Mutable()
 
@@ -160,7 +167,7 @@ object HoleTracker : ChunkScanner.BlockChangeSubscriber, MinecraftShortcuts {
         if (containsKey(longValue)) {
             return get(longValue)
         } else {
-            val state = blockPos.getState() ?: return AIR
+            val state = cursor.getBlockState(blockPos)
             val result = when {
                 state.isAir -> AIR
                 state.block in BLAST_RESISTANT_BLOCKS -> BLAST_RESISTANT
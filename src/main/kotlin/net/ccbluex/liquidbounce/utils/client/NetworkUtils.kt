@@ -154,12 +154,15 @@ fun ClientPlayerInteractionManager.interactItem(
 fun handlePacket(packet: Packet<*>) =
     runCatching { (packet as Packet<ClientPlayPacketListener>).apply(mc.networkHandler) }
 
-fun sendPacketSilently(packet: Packet<*>) {
+/**
+ * @param flush false only writes the packet, the channel has to be flushed by the caller
+ */
+fun sendPacketSilently(packet: Packet<*>, flush: Boolean = true) {
     // hack fix for the packet handler not being called on Rotation Manager for tracking
     val packetEvent = PacketEvent(TransferOrigin.OUTGOING, packet, false,)
     RotationManager.packetHandler.handler(packetEvent)
     ModulePacketLogger.onPacket(TransferOrigin.OUTGOING, packet)
-    mc.networkHandler?.connection?.send(packetEvent.packet, null)
+    mc.networkHandler?.connection?.send(packetEvent.packet, null, flush)
 }
 
 enum class MovePacketType(override val choiceName: String, val generatePacket: () -> PlayerMoveC2SPacket)
@@ -0,0 +1,166 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.client
+
+import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket
+import net.minecraft.util.math.Vec3d
+
+/**
+ * Packets of a single [TransferOrigin] queued by [PacketQueueManager], in the order they were queued.
+ *
+ * The positions of queued [PlayerMoveC2SPacket]s are kept in a primitive array next to the packets,
+ * so they can be read without walking and filtering the whole queue.
+ */
+internal class PacketQueue {
+
+    private val entries = ArrayDeque<QueuedPacket>()
+
+    /**
+     * x, y, z of every queued position-changing move packet
+     */
+    private var positions = DoubleArray(INITIAL_POSITION_CAPACITY * 3)
+    private var positionCount = 0
+
+    private var cachedPositions: List<Vec3d>? = null
+
+    val size
+        @Synchronized get() = entries.size
+
+    /**
+     * Timestamp of the oldest queued packet or null if the queue is empty
+     */
+    val oldestTimestamp
+        @Synchronized get() = entries.firstOrNull()?.snapshot?.timestamp
+
+    @Synchronized
+    fun add(snapshot: PacketSnapshot, sequence: Long) {
+        entries.addLast(QueuedPacket(snapshot, sequence))
+        appendPosition(snapshot)
+        cachedPositions = null
+    }
+
+    /**
+     * Removes all packets matching [predicate] and adds them to [out], keeping their order.
+     */
+    @Synchronized
+    fun drain(out: MutableList<QueuedPacket>, predicate: (QueuedPacket) -> Boolean) {
+        if (entries.isEmpty()) {
+            return
+        }
+
+        val sizeBefore = out.size
+        val iterator = entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (predicate(entry)) {
+                out.add(entry)
+                iterator.remove()
+            }
+        }
+
+        if (out.size != sizeBefore) {
+            rebuildPositions()
+        }
+    }
+
+    /**
+     * Sequence number of the [count]-th queued move packet which changes the position,
+     * or [Long.MAX_VALUE] if there are less of them.
+     */
+    @Synchronized
+    fun sequenceOfMove(count: Int): Long {
+        var moves = 0
+
+        for (entry in entries) {
+            if (entry.isPositionChange) {
+                moves++
+            }
+
+            if (moves >= count) {
+                return entry.sequence
+            }
+        }
+
+        return Long.MAX_VALUE
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        positionCount = 0
+        cachedPositions = null
+    }
+
+    @Synchronized
+    fun snapshots(): List<QueuedPacket> = entries.toList()
+
+    /**
+     * The queued positions, the list is cached until the queue changes.
+     */
+    @Synchronized
+    fun positions(): List<Vec3d> = cachedPositions ?: List(positionCount) { i ->
+        Vec3d(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2])
+    }.also { cachedPositions = it }
+
+    @Synchronized
+    fun firstPosition(): Vec3d? {
+        if (positionCount == 0) {
+            return null
+        }
+
+        return cachedPositions?.first() ?: Vec3d(positions[0], positions[1], positions[2])
+    }
+
+    private fun rebuildPositions() {
+        positionCount = 0
+        cachedPositions = null
+
+        for (entry in entries) {
+            appendPosition(entry.snapshot)
+        }
+    }
+
+    private fun appendPosition(snapshot: PacketSnapshot) {
+        val packet = snapshot.packet as? PlayerMoveC2SPacket ?: return
+
+        if (!packet.changePosition) {
+            return
+        }
+
+        if (positions.size < (positionCount + 1) * 3) {
+            positions = positions.copyOf(positions.size * 2)
+        }
+
+        val offset = positionCount * 3
+        positions[offset] = packet.x
+        positions[offset + 1] = packet.y
+        positions[offset + 2] = packet.z
+        positionCount++
+    }
+
+    class QueuedPacket(val snapshot: PacketSnapshot, val sequence: Long) {
+        val isPositionChange: Boolean
+            get() = (snapshot.packet as? PlayerMoveC2SPacket)?.changePosition == true
+    }
+
+    private companion object {
+        const val INITIAL_POSITION_CAPACITY = 64
+    }
+
+}
@@ -18,16 +18,17 @@
  */
 package net.ccbluex.liquidbounce.utils.client
 
-import com.google.common.collect.Queues
 import net.ccbluex.liquidbounce.event.EventListener
 import net.ccbluex.liquidbounce.event.EventManager
 import net.ccbluex.liquidbounce.event.events.*
 import net.ccbluex.liquidbounce.event.handler
+import net.ccbluex.liquidbounce.features.module.modules.render.ModuleDebug
 import net.ccbluex.liquidbounce.render.drawLineStrip
 import net.ccbluex.liquidbounce.render.engine.type.Color4b
 import net.ccbluex.liquidbounce.render.engine.type.Vec3
 import net.ccbluex.liquidbounce.render.renderEnvironmentForWorld
 import net.ccbluex.liquidbounce.render.withColor
+import net.ccbluex.liquidbounce.render.withPositionRelativeToCamera
 import net.ccbluex.liquidbounce.utils.aiming.RotationManager
 import net.ccbluex.liquidbounce.utils.kotlin.EventPriorityConvention.FINAL_DECISION
 import net.ccbluex.liquidbounce.utils.kotlin.mapArray
@@ -47,7 +48,8 @@ import net.minecraft.network.packet.s2c.play.PlaySoundS2CPacket
 import net.minecraft.network.packet.s2c.play.PlayerPositionLookS2CPacket
 import net.minecraft.sound.SoundEvents
 import net.minecraft.util.math.Vec3d
-import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.min
 
 /**
  * Allows to queue packets and flush them later on demand.
@@ -57,38 +59,53 @@ import java.util.concurrent.ConcurrentLinkedQueue
  */
 object PacketQueueManager : EventListener {
 
-    val packetQueue: ConcurrentLinkedQueue<PacketSnapshot> = Queues.newConcurrentLinkedQueue()
-    val positions
-        get() = packetQueue
-            .map { snapshot -> snapshot.packet }
-            .filterIsInstance<PlayerMoveC2SPacket>()
-            .filter { playerMoveC2SPacket -> playerMoveC2SPacket.changePosition }
-            .map { playerMoveC2SPacket -> Vec3d(playerMoveC2SPacket.x, playerMoveC2SPacket.y, playerMoveC2SPacket.z) }
+    private val outgoingQueue = PacketQueue()
+    private val incomingQueue = PacketQueue()
+
+    /**
+     * Orders the packets of both queues, e.g. for [flush] with a count.
+     */
+    private val sequence = AtomicLong()
+
+    private var flushedPackets = 0L
+    private var flushBatches = 0L
+
+    /**
+     * Positions of the queued outgoing move packets. The list is only rebuilt when the queue changes.
+     */
+    val positions: List<Vec3d>
+        get() = outgoingQueue.positions()
 
     val isLagging
-        get() = packetQueue.isNotEmpty()
+        get() = outgoingQueue.size > 0 || incomingQueue.size > 0
+
+    /**
+     * Line strip of [positions] relative to the first position, rebuilt together with the positions
+     */
+    private var lineStrip = emptyArray<Vec3>()
+    private var lineSource: List<Vec3d>? = null
 
     @Suppress("unused")
     private val flushHandler = handler<GameRenderTaskQueueEvent> {
         if (mc.networkHandler?.connection?.isOpen != true) {
-            packetQueue.clear()
+            clear()
             return@handler
         }
 
         if (fireEvent(null, TransferOrigin.OUTGOING) == Action.FLUSH) {
-            flush { snapshot -> snapshot.origin == TransferOrigin.OUTGOING }
+            flush(TransferOrigin.OUTGOING)
         }
     }
 
     @Suppress("unused")
     private val flushReceiveHandler = handler<TickPacketProcessEvent> {
         if (mc.networkHandler?.connection?.isOpen != true) {
-            packetQueue.clear()
+            clear()
             return@handler
         }
 
         if (fireEvent(null, TransferOrigin.INCOMING) == Action.FLUSH) {
-            flush { snapshot -> snapshot.origin == TransferOrigin.INCOMING }
+            flush(TransferOrigin.INCOMING)
         }
     }
 
@@ -105,7 +122,7 @@ object PacketQueueManager : EventListener {
         // If we shouldn't lag, don't do anything
         val lagResult = fireEvent(packet, origin)
         if (lagResult == Action.FLUSH) {
-            flush { snapshot -> snapshot.origin == origin }
+            flush(origin)
             return@handler
         }
 
@@ -126,7 +143,7 @@ object PacketQueueManager : EventListener {
 
             // Flush on teleport or disconnect
             is PlayerPositionLookS2CPacket, is DisconnectS2CPacket -> {
-                flush { snapshot -> snapshot.origin == origin }
+                flush(origin)
                 return@handler
             }
 
@@ -140,7 +157,7 @@ object PacketQueueManager : EventListener {
             // Flush on own death
             is HealthUpdateS2CPacket -> {
                 if (packet.health <= 0) {
-                    flush { snapshot -> snapshot.origin == origin }
+                    flush(origin)
                     return@handler
                 }
             }
@@ -148,12 +165,13 @@ object PacketQueueManager : EventListener {
         }
 
         event.cancelEvent()
-        packetQueue.add(
+        queueOf(origin).add(
             PacketSnapshot(
                 packet,
                 origin,
                 System.currentTimeMillis()
-            )
+            ),
+            sequence.incrementAndGet()
         )
     }
 
@@ -161,10 +179,22 @@ object PacketQueueManager : EventListener {
     private val worldChangeHandler = handler<WorldChangeEvent> { event ->
         // Clear packets on disconnect
         if (event.world == null) {
-            packetQueue.clear()
+            clear()
         }
     }
 
+    @Suppress("unused")
+    private val metricsHandler = handler<GameTickEvent> {
+        if (!ModuleDebug.running) {
+            return@handler
+        }
+
+        val metrics = metrics()
+        ModuleDebug.debugParameter(this, "Outgoing", "${metrics.outgoingSize} (${metrics.outgoingAge}ms)")
+        ModuleDebug.debugParameter(this, "Incoming", "${metrics.incomingSize} (${metrics.incomingAge}ms)")
+        ModuleDebug.debugParameter(this, "Flushed", "${metrics.flushedPackets} in ${metrics.flushBatches} batches")
+    }
+
     @Suppress("unused")
     private val renderHandler = handler<WorldRenderEvent> { event ->
         val matrixStack = event.matrixStack
@@ -172,15 +202,25 @@ object PacketQueueManager : EventListener {
         // Use LiquidBounce accent color
         val color = Color4b(0x00, 0x80, 0xFF, 0xFF)
 
+        val positions = this.positions
+        val anchor = positions.firstOrNull() ?: return@handler
+
+        if (lineSource !== positions) {
+            lineSource = positions
+            lineStrip = positions.mapArray { vec3d -> Vec3(vec3d.subtract(anchor)) }
+        }
+
         renderEnvironmentForWorld(matrixStack) {
-            withColor(color) {
-                drawLineStrip(positions = positions.mapArray { vec3d -> Vec3(relativeToCamera(vec3d)) })
+            withPositionRelativeToCamera(anchor) {
+                withColor(color) {
+                    drawLineStrip(positions = lineStrip)
+                }
             }
         }
 
         val perspectiveEvent = EventManager.callEvent(PerspectiveEvent(mc.options.perspective))
         if (perspectiveEvent.perspective != Perspective.FIRST_PERSON) {
-            val pos = positions.firstOrNull() ?: return@handler
+            val pos = anchor
             val rotation = RotationManager.actualServerRotation
 
             val wireframePlayer = WireframePlayer(pos, rotation.yaw, rotation.pitch)
@@ -189,66 +229,135 @@ object PacketQueueManager : EventListener {
     }
 
     fun flush(flushWhen: (PacketSnapshot) -> Boolean) {
-        packetQueue.removeIf { snapshot ->
-            if (flushWhen(snapshot)) {
-                flushSnapshot(snapshot)
-                true
-            } else {
-                false
-            }
-        }
+        val released = ArrayList<PacketQueue.QueuedPacket>()
+
+        outgoingQueue.drain(released) { flushWhen(it.snapshot) }
+        incomingQueue.drain(released) { flushWhen(it.snapshot) }
+
+        flushSnapshots(released)
+    }
+
+    /**
+     * Flushes all queued packets of [origin].
+     */
+    fun flush(origin: TransferOrigin) {
+        val released = ArrayList<PacketQueue.QueuedPacket>()
+        queueOf(origin).drain(released) { true }
+        flushSnapshots(released)
     }
 
     fun flush(count: Int) {
         // Take all packets until the counter of move packets reaches count and send them
-        var counter = 0
-
-        for (snapshot in packetQueue.iterator()) {
-            val packet = snapshot.packet
+        val lastSequence = outgoingQueue.sequenceOfMove(count)
+        val released = ArrayList<PacketQueue.QueuedPacket>()
 
-            if (packet is PlayerMoveC2SPacket && packet.changePosition) {
-                counter += 1
-            }
-
-            flushSnapshot(snapshot)
-            packetQueue.remove(snapshot)
+        outgoingQueue.drain(released) { it.sequence <= lastSequence }
+        incomingQueue.drain(released) { it.sequence <= lastSequence }
 
-            if (counter >= count) {
-                break
-            }
-        }
+        flushSnapshots(released)
     }
 
     fun cancel() {
-        positions.firstOrNull()?.let { pos ->
+        outgoingQueue.firstPosition()?.let { pos ->
             player.setPosition(pos)
         }
 
-        for (snapshot in packetQueue) {
-            when (snapshot.packet) {
-                is PlayerMoveC2SPacket -> continue
-                else -> flushSnapshot(snapshot)
-            }
-        }
-        packetQueue.clear()
+        val released = ArrayList<PacketQueue.QueuedPacket>()
+
+        outgoingQueue.drain(released) { it.snapshot.packet !is PlayerMoveC2SPacket }
+        incomingQueue.drain(released) { it.snapshot.packet !is PlayerMoveC2SPacket }
+        clear()
+
+        flushSnapshots(released)
     }
 
     fun isAboveTime(delay: Long): Boolean {
-        val entryPacketTime = (packetQueue.firstOrNull()?.timestamp ?: return false)
+        val entryPacketTime = oldestTimestamp() ?: return false
         return System.currentTimeMillis() - entryPacketTime >= delay
     }
 
+    /**
+     * All queued packets of both origins in the order they were queued.
+     */
+    fun snapshots(): List<PacketSnapshot> = (outgoingQueue.snapshots() + incomingQueue.snapshots())
+        .sortedBy { it.sequence }
+        .map { it.snapshot }
+
     inline fun <reified T> rewrite(action: (T) -> Unit) {
-        packetQueue
-            .filterIsInstance<T>()
-            .forEach(action)
+        for (snapshot in snapshots()) {
+            val packet = snapshot.packet
+
+            if (packet is T) {
+                action(packet)
+            }
+        }
+    }
+
+    fun metrics(): Metrics {
+        val now = System.currentTimeMillis()
+
+        return Metrics(
+            outgoingSize = outgoingQueue.size,
+            incomingSize = incomingQueue.size,
+            outgoingAge = outgoingQueue.oldestTimestamp?.let { now - it } ?: 0L,
+            incomingAge = incomingQueue.oldestTimestamp?.let { now - it } ?: 0L,
+            flushedPackets = flushedPackets,
+            flushBatches = flushBatches
+        )
+    }
+
+    private fun oldestTimestamp(): Long? {
+        val outgoing = outgoingQueue.oldestTimestamp
+        val incoming = incomingQueue.oldestTimestamp
+
+        return when {
+            outgoing == null -> incoming
+            incoming == null -> outgoing
+            else -> min(outgoing, incoming)
+        }
     }
 
-    private fun flushSnapshot(snapshot: PacketSnapshot) {
-        when (snapshot.origin) {
-            TransferOrigin.OUTGOING -> sendPacketSilently(snapshot.packet)
-            TransferOrigin.INCOMING -> handlePacket(snapshot.packet)
+    private fun clear() {
+        outgoingQueue.clear()
+        incomingQueue.clear()
+    }
+
+    private fun queueOf(origin: TransferOrigin) = when (origin) {
+        TransferOrigin.OUTGOING -> outgoingQueue
+        TransferOrigin.INCOMING -> incomingQueue
+    }
+
+    /**
+     * Releases [released] in queue order. Outgoing packets are written without flushing the channel,
+     * which is flushed once at the end.
+     */
+    private fun flushSnapshots(released: MutableList<PacketQueue.QueuedPacket>) {
+        if (released.isEmpty()) {
+            return
+        }
+
+        // Both queues have been drained one after another
+        released.sortBy { it.sequence }
+
+        var wroteOutgoing = false
+        for (queued in released) {
+            val snapshot = queued.snapshot
+
+            when (snapshot.origin) {
+                TransferOrigin.OUTGOING -> {
+                    sendPacketSilently(snapshot.packet, flush = false)
+                    wroteOutgoing = true
+                }
+                TransferOrigin.INCOMING -> handlePacket(snapshot.packet)
+            }
         }
+
+        if (wroteOutgoing) {
+            mc.networkHandler?.connection?.flush()
+        }
+
+        flushedPackets += released.size
+        flushBatches++
     }
 
     private fun fireEvent(packet: Packet<*>?, origin: TransferOrigin) =
@@ -260,6 +369,15 @@ object PacketQueueManager : EventListener {
         FLUSH,
     }
 
+    data class Metrics(
+        val outgoingSize: Int,
+        val incomingSize: Int,
+        val outgoingAge: Long,
+        val incomingAge: Long,
+        val flushedPackets: Long,
+        val flushBatches: Long
+    )
+
 }
 
 data class PacketSnapshot(
@@ -3,6 +3,7 @@ package net.ccbluex.liquidbounce.utils.entity
 import net.ccbluex.liquidbounce.event.EventListener
 import net.ccbluex.liquidbounce.event.events.GameTickEvent
 import net.ccbluex.liquidbounce.event.events.MovementInputEvent
+import net.ccbluex.liquidbounce.event.events.WorldChangeEvent
 import net.ccbluex.liquidbounce.event.handler
 import net.ccbluex.liquidbounce.utils.client.player
 import net.ccbluex.liquidbounce.utils.kotlin.EventPriorityConvention.CRITICAL_MODIFICATION
@@ -17,12 +18,27 @@ import kotlin.concurrent.read
 import kotlin.concurrent.write
 
 object PlayerSimulationCache: EventListener {
+    /**
+     * The caches are kept across ticks and reset in place once they are requested in a newer tick,
+     * so the simulation state of each player is only allocated once.
+     */
     private val otherPlayerCache = ConcurrentHashMap<PlayerEntity, SimulatedPlayerCache>()
     private var localPlayerCache: SimulatedPlayerCache? = null
 
+    @Volatile
+    private var currentTick = 0
+
     @Suppress("unused")
     private val gameTickHandler = handler<GameTickEvent>(priority = FIRST_PRIORITY) {
+        this.currentTick++
+        this.otherPlayerCache.keys.removeIf { it.isRemoved }
+    }
+
+    @Suppress("unused")
+    private val worldChangeHandler = handler<WorldChangeEvent> {
+        // Players of the previous world are never marked as removed
         this.otherPlayerCache.clear()
+        this.localPlayerCache = null
     }
 
     @Suppress("unused")
@@ -66,14 +82,19 @@ object PlayerSimulationCache: EventListener {
     }
 
     fun getSimulationForOtherPlayers(player: PlayerEntity): SimulatedPlayerCache {
-        return otherPlayerCache.computeIfAbsent(player) {
+        val tick = this.currentTick
+        val cache = otherPlayerCache.computeIfAbsent(player) {
             val simulatedPlayer = SimulatedPlayer.fromOtherPlayer(
                 player,
                 SimulatedPlayer.SimulatedPlayerInput.guessInput(player)
             )
 
-            SimulatedPlayerCache(simulatedPlayer)
+            SimulatedPlayerCache(simulatedPlayer, tick)
         }
+
+        cache.resetIfOutdated(tick, player)
+
+        return cache
     }
 
     fun getSimulationForLocalPlayer(): SimulatedPlayerCache {
@@ -95,13 +116,43 @@ object PlayerSimulationCache: EventListener {
     }
 }
 
-class SimulatedPlayerCache(internal val simulatedPlayer: SimulatedPlayer) {
+class SimulatedPlayerCache(
+    internal val simulatedPlayer: SimulatedPlayer,
+    private var tick: Int = 0
+) {
     private var currentSimulationStep = 0
     private val simulationSteps = ArrayList<SimulatedPlayerSnapshot>().apply {
         add(SimulatedPlayerSnapshot(simulatedPlayer))
     }
     private val lock = ReentrantReadWriteLock()
 
+    /**
+     * Incremented by every reset, sequences end once it changes so they never mix two ticks.
+     * Snapshots are immutable and stay valid after a reset.
+     */
+    @Volatile
+    private var generation = 0
+
+    /**
+     * Resets the simulation in place to the current state of the player, if it was created before [tick].
+     * Only for simulations of other players, see [SimulatedPlayer.resetToOtherPlayer].
+     */
+    internal fun resetIfOutdated(tick: Int, player: PlayerEntity) {
+        if (this.tick == tick) {
+            return
+        }
+
+        lock.write {
+            simulatedPlayer.resetToOtherPlayer(SimulatedPlayer.SimulatedPlayerInput.guessInput(player))
+            simulationSteps.clear()
+            simulationSteps.add(SimulatedPlayerSnapshot(simulatedPlayer))
+            currentSimulationStep = 0
+
+            generation++
+            this.tick = tick
+        }
+    }
+
     fun simulateUntil(ticks: Int) {
         check(ticks >= 0) { "ticks may not be negative" }
 
@@ -128,9 +179,10 @@ class SimulatedPlayerCache(internal val simulatedPlayer: SimulatedPlayer) {
     }
 
     fun simulate() = sequence<SimulatedPlayerSnapshot> {
+        val generation = this@SimulatedPlayerCache.generation
         var idx = 0
 
-        while (true) {
+        while (generation == this@SimulatedPlayerCache.generation) {
             yield(getSnapshotAt(idx))
 
             idx++
@@ -152,8 +204,14 @@ class SimulatedPlayerCache(internal val simulatedPlayer: SimulatedPlayer) {
 
         simulateUntil(tickRange.last + 1)
 
+        val generation = this.generation
+
         return sequence<SimulatedPlayerSnapshot> {
             for (i in tickRange) {
+                if (generation != this@SimulatedPlayerCache.generation) {
+                    break
+                }
+
                 yield(getSnapshotAt(i))
             }
         }
@@ -148,6 +148,40 @@ class SimulatedPlayer(
         }
     }
 
+    /**
+     * Resets this simulation in place to the current state of [player], which must not be the local player.
+     * Same as [fromOtherPlayer], but reuses the fluid collections of this instance.
+     */
+    fun resetToOtherPlayer(input: SimulatedPlayerInput) {
+        this.input = input
+        this.pos = player.pos
+        this.velocity = player.pos.subtract(player.prevPos)
+        this.boundingBox = player.boundingBox
+        this.yaw = player.yaw
+        this.pitch = player.pitch
+
+        this.sprinting = player.isSprinting
+
+        this.fallDistance = player.fallDistance
+        this.jumpingCooldown = player.jumpingCooldown
+        this.isJumping = player.jumping
+        this.isFallFlying = player.isGliding
+        this.onGround = player.isOnGround
+        this.horizontalCollision = player.horizontalCollision
+        this.verticalCollision = player.verticalCollision
+
+        this.touchingWater = player.isTouchingWater
+        this.isSwimming = player.isSwimming
+        this.submergedInWater = player.isSubmergedInWater
+        this.fluidHeight.clear()
+        this.fluidHeight.putAll(player.fluidHeight)
+        this.submergedFluidTag.clear()
+        this.submergedFluidTag.addAll(player.submergedFluidTag)
+
+        this.simulatedTicks = 0
+        this.clipLedged = false
+    }
+
     private var simulatedTicks: Int = 0
     var clipLedged = false
         private set
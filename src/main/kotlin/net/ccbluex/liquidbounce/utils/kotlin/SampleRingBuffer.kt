@@ -0,0 +1,61 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.kotlin
+
+/**
+ * Keeps the latest [capacity] samples, e.g. durations in nanoseconds, to calculate percentiles.
+ *
+ * Recording is constant time and does not allocate. The class is not thread-safe.
+ */
+class SampleRingBuffer(val capacity: Int) {
+
+    private val samples = LongArray(capacity)
+    private var cursor = 0
+
+    /**
+     * Amount of samples ever recorded
+     */
+    var count = 0L
+        private set
+
+    fun record(sample: Long) {
+        samples[cursor] = sample
+        cursor = (cursor + 1) % capacity
+        count++
+    }
+
+    /**
+     * Returns the [percentile] (0..1) of the retained samples or 0 if there are none.
+     */
+    fun percentile(percentile: Double): Long {
+        val retained = count.coerceAtMost(capacity.toLong()).toInt()
+        if (retained == 0) {
+            return 0L
+        }
+
+        val sorted = samples.copyOf(retained).apply { sort() }
+        return sorted[((retained - 1) * percentile.coerceIn(0.0, 1.0)).toInt()]
+    }
+
+    fun clear() {
+        cursor = 0
+        count = 0
+    }
+
+}
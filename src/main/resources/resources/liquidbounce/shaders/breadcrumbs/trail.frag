@@ -0,0 +1,11 @@
+#version 410 core
+
+uniform vec4 Color;
+
+in float vertexAlpha;
+
+out vec4 fragColor;
+
+void main() {
+    fragColor = vec4(Color.rgb, vertexAlpha);
+}
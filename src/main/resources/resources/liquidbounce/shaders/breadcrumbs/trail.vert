@@ -0,0 +1,47 @@
+#version 410 core
+
+// Points of all trails, every trail owns Capacity consecutive texels: xyz relative to the origin, w = time
+uniform samplerBuffer Points;
+uniform int Capacity;
+
+uniform mat4 MVP;
+uniform vec3 Offset;
+uniform vec4 Color;
+uniform float Time;
+uniform float Alive;
+uniform bool Fade;
+uniform float Height;
+
+out float vertexAlpha;
+
+// Corners of a segment, the newer end comes first like the immediate renderer draws them
+const int NEWER[6] = int[6](1, 0, 0, 1, 0, 1);
+const float TOP[6] = float[6](0.0, 0.0, 1.0, 0.0, 1.0, 1.0);
+
+void main() {
+    int base = (gl_InstanceID / Capacity) * Capacity;
+    int index = gl_InstanceID % Capacity;
+
+    vec4 older = texelFetch(Points, base + index);
+    vec4 newer = texelFetch(Points, base + (index + 1) % Capacity);
+
+    // Unused points have no time and the newest point is followed by the oldest one
+    bool valid = older.w > 0.0 && newer.w > older.w && (Alive <= 0.0 || Time - older.w <= Alive);
+
+    if (!valid) {
+        // Degenerate, every vertex of the segment ends up outside the clip space
+        gl_Position = vec4(2.0, 2.0, 2.0, 1.0);
+        vertexAlpha = 0.0;
+        return;
+    }
+
+    vec4 point = NEWER[gl_VertexID] == 1 ? newer : older;
+    vec3 position = point.xyz + Offset + vec3(0.0, TOP[gl_VertexID] * Height, 0.0);
+
+    gl_Position = MVP * vec4(position, 1.0);
+
+    vertexAlpha = Color.a;
+    if (Fade && Alive > 0.0) {
+        vertexAlpha *= clamp(1.0 - (Time - point.w) / Alive, 0.0, 1.0);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.event
+
+import net.ccbluex.liquidbounce.event.events.BlockShapeEvent
+import net.minecraft.Bootstrap
+import net.minecraft.SharedConstants
+import net.minecraft.block.Blocks
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.shape.VoxelShapes
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable
+
+/**
+ * Measures the [BlockShapeEvent] hook of entity collision sweeps with a growing amount of handlers.
+ *
+ * The handlers do nothing, so the difference between the results is the cost of calling the event.
+ * A sweep calls the hook once for every block in the expanded bounding box of a player,
+ * like the collision spliterator does. Only runs with the environment variable `LIQUIDBOUNCE_BENCHMARKS=true`.
+ */
+@EnabledIfEnvironmentVariable(named = "LIQUIDBOUNCE_BENCHMARKS", matches = "true")
+class CollisionSweepBenchmarkTest {
+
+    private class BenchmarkListener : EventListener {
+        @Suppress("unused")
+        private val shapeHandler = handler<BlockShapeEvent> { }
+    }
+
+    /**
+     * The blocks within the bounding box of a player expanded by three blocks
+     */
+    private val positions = BlockPos.iterate(-4, -3, -4, 4, 5, 4).map(BlockPos::toImmutable)
+
+    private fun sweep(): Int {
+        val state = Blocks.STONE.defaultState
+        val shape = VoxelShapes.fullCube()
+        var shapes = 0
+
+        for (pos in positions) {
+            if (!BlockShapeEvent.callReusable(state, pos, shape).isEmpty) {
+                shapes++
+            }
+        }
+
+        return shapes
+    }
+
+    @Test
+    fun benchmarkCollisionSweeps() {
+        for (listeners in intArrayOf(0, 1, 5)) {
+            val benchmarkListeners = List(listeners) { BenchmarkListener() }
+
+            try {
+                repeat(WARMUP_SWEEPS) {
+                    sweep()
+                }
+
+                var shapes = 0L
+                val start = System.nanoTime()
+
+                repeat(SWEEPS) {
+                    shapes += sweep()
+                }
+
+                val nanosPerSweep = (System.nanoTime() - start) / SWEEPS
+                logger.info("{} listeners: {} ns per sweep", listeners, nanosPerSweep)
+
+                // The handlers do nothing, so every sweep has to see the same shapes
+                assertEquals(SWEEPS.toLong() * positions.size, shapes)
+            } finally {
+                benchmarkListeners.forEach(EventManager::unregisterEventHandler)
+            }
+        }
+    }
+
+    private companion object {
+        val logger: Logger = LogManager.getLogger(CollisionSweepBenchmarkTest::class.java)
+
+        const val WARMUP_SWEEPS = 2_000
+        const val SWEEPS = 5_000
+
+        @JvmStatic
+        @BeforeAll
+        fun bootstrap() {
+            SharedConstants.createGameVersion()
+            Bootstrap.initialize()
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.integration.interop.protocol.event
+
+import com.google.gson.JsonNull
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class SocketEventListenerDeltaTest {
+
+    private fun json(text: String): JsonObject = JsonParser.parseString(text).asJsonObject
+
+    @Test
+    fun testUnchangedEntriesAreOmitted() {
+        val state = json("""{"health": 20.0, "name": "Steve", "effects": [1, 2], "position": {"x": 1, "y": 2}}""")
+
+        assertTrue(SocketEventListener.delta(state, state.deepCopy()).isEmpty)
+    }
+
+    @Test
+    fun testChangedEntriesAreIncluded() {
+        val previous = json("""{"health": 20.0, "name": "Steve", "effects": [1, 2]}""")
+        val current = json("""{"health": 19.5, "name": "Steve", "effects": [1], "armor": 4}""")
+
+        assertEquals(
+            json("""{"health": 19.5, "effects": [1], "armor": 4}"""),
+            SocketEventListener.delta(previous, current)
+        )
+    }
+
+    @Test
+    fun testRemovedEntriesAreNull() {
+        val previous = json("""{"health": 20.0, "target": "Alex"}""")
+        val current = json("""{"health": 20.0}""")
+
+        val delta = SocketEventListener.delta(previous, current)
+
+        assertEquals(setOf("target"), delta.keySet())
+        assertEquals(JsonNull.INSTANCE, delta.get("target"))
+    }
+
+    @Test
+    fun testNestedObjectsAreComparedRecursively() {
+        val previous = json("""{"position": {"x": 1, "y": 2, "z": 3}, "rotation": {"yaw": 90}}""")
+        val current = json("""{"position": {"x": 1, "y": 5}, "rotation": "none"}""")
+
+        assertEquals(
+            json("""{"position": {"y": 5, "z": null}, "rotation": "none"}"""),
+            SocketEventListener.delta(previous, current)
+        )
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.integration.theme.component.types.minimap
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable
+
+class MinimapHeightmapTest {
+
+    /**
+     * A chunk of the overworld's height with rolling terrain, some floating blocks which are not part of the
+     * surface (like glass) and empty sections above the terrain.
+     */
+    private class SyntheticChunk {
+        val bottomY = -64
+        val topY = 319
+
+        private val sectionCount = (topY - bottomY + 1) shr 4
+
+        /**
+         * 0 = air, 1 = solid, 2 = not a surface block
+         */
+        private val blocks = ByteArray((topY - bottomY + 1) * 256)
+        private val nonEmptySections = BooleanArray(sectionCount)
+
+        /**
+         * Highest non-air block + 1, like [net.minecraft.world.Heightmap.Type.WORLD_SURFACE]
+         */
+        val worldSurface = IntArray(256) { bottomY }
+
+        init {
+            for (x in 0..15) {
+                for (z in 0..15) {
+                    val terrainHeight = 62 + (x * 7 + z * 13) % 19
+
+                    for (y in bottomY..terrainHeight) {
+                        set(x, y, z, 1)
+                    }
+
+                    if ((x + z) % 5 == 0) {
+                        set(x, terrainHeight + 4, z, 2)
+                    }
+                }
+            }
+        }
+
+        private fun set(x: Int, y: Int, z: Int, block: Int) {
+            blocks[index(x, y, z)] = block.toByte()
+            nonEmptySections[(y - bottomY) shr 4] = true
+            worldSurface[(z shl 4) or x] = maxOf(worldSurface[(z shl 4) or x], y + 1)
+        }
+
+        private fun index(x: Int, y: Int, z: Int) = ((y - bottomY) shl 8) or (z shl 4) or x
+
+        fun isSurface(x: Int, y: Int, z: Int) = blocks[index(x, y, z)] == 1.toByte()
+
+        fun isSectionEmpty(sectionY: Int) = !nonEmptySections[sectionY - (bottomY shr 4)]
+    }
+
+    private val chunk = SyntheticChunk()
+
+    /**
+     * The previous implementation: check every block from the top of the world
+     */
+    private fun blockByBlock(x: Int, z: Int): Int {
+        var y = chunk.topY
+
+        while (y > chunk.bottomY) {
+            if (chunk.isSurface(x, y, z)) {
+                return y
+            }
+            y--
+        }
+
+        return y
+    }
+
+    private fun sectionWise(x: Int, z: Int, fromY: Int = chunk.topY) = scanColumnTopDown(
+        fromY,
+        chunk.bottomY,
+        isSectionEmpty = chunk::isSectionEmpty,
+        isSurface = { y -> chunk.isSurface(x, y, z) }
+    )
+
+    private fun fromWorldSurface(x: Int, z: Int) = sectionWise(x, z, chunk.worldSurface[(z shl 4) or x] - 1)
+
+    private fun heightmap(column: (Int, Int) -> Int) = IntArray(256) { column(it and 15, it shr 4) }
+
+    @Test
+    fun testScansFindTheSameSurface() {
+        val expected = heightmap(::blockByBlock)
+
+        assertArrayEquals(expected, heightmap { x, z -> sectionWise(x, z) })
+        assertArrayEquals(expected, heightmap(::fromWorldSurface))
+    }
+
+    @Test
+    fun testEmptyColumnEndsAtBottom() {
+        val bottomY = -64
+
+        assertEquals(bottomY, scanColumnTopDown(319, bottomY, isSectionEmpty = { true }, isSurface = { false }))
+        assertEquals(bottomY, scanColumnTopDown(319, bottomY, isSectionEmpty = { false }, isSurface = { false }))
+    }
+
+    /**
+     * Microbenchmark of a full chunk update, logs the time per chunk for each strategy.
+     * Only runs with the environment variable `LIQUIDBOUNCE_BENCHMARKS=true`.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "LIQUIDBOUNCE_BENCHMARKS", matches = "true")
+    fun benchmarkChunkUpdate() {
+        val strategies = listOf<Pair<String, (Int, Int) -> Int>>(
+            "Block by block" to { x, z -> blockByBlock(x, z) },
+            "Section-wise" to { x, z -> sectionWise(x, z) },
+            "World surface" to { x, z -> fromWorldSurface(x, z) }
+        )
+
+        val checksums = strategies.map { (name, strategy) ->
+            var checksum = 0L
+
+            repeat(WARMUP_ITERATIONS) {
+                checksum += heightmap(strategy).sum()
+            }
+
+            val start = System.nanoTime()
+            repeat(ITERATIONS) {
+                checksum += heightmap(strategy).sum()
+            }
+            val nanosPerChunk = (System.nanoTime() - start) / ITERATIONS
+
+            logger.info("{}: {} ns per chunk", name, nanosPerChunk)
+            checksum
+        }
+
+        // The timings are only comparable if every strategy did the same work
+        assertEquals(1, checksums.distinct().size, "Strategies computed different heightmaps: $checksums")
+    }
+
+    private companion object {
+        val logger: Logger = LogManager.getLogger(MinimapHeightmapTest::class.java)
+
+        const val WARMUP_ITERATIONS = 2_000
+        const val ITERATIONS = 5_000
+    }
+
+}
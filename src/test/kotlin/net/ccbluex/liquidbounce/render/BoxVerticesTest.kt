@@ -0,0 +1,83 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.render
+
+import net.ccbluex.liquidbounce.render.engine.type.Vec3
+import net.minecraft.client.render.VertexConsumer
+import net.minecraft.util.math.Box
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class BoxVerticesTest {
+
+    private class RecordingConsumer : VertexConsumer {
+        val vertices = mutableListOf<Vec3>()
+        val colors = mutableListOf<Int>()
+
+        override fun vertex(x: Float, y: Float, z: Float): VertexConsumer {
+            vertices += Vec3(x, y, z)
+            return this
+        }
+
+        override fun color(red: Int, green: Int, blue: Int, alpha: Int): VertexConsumer {
+            colors += (alpha shl 24) or (red shl 16) or (green shl 8) or blue
+            return this
+        }
+
+        override fun texture(u: Float, v: Float) = this
+        override fun overlay(u: Int, v: Int) = this
+        override fun light(u: Int, v: Int) = this
+        override fun normal(x: Float, y: Float, z: Float) = this
+    }
+
+    private val box = Box(-1.5, 2.0, 0.25, 3.0, 4.5, 7.0)
+
+    private fun emit(outline: Boolean, skipMask: Int = -1) = RecordingConsumer().apply {
+        boxVertices(
+            null,
+            box.minX.toFloat(), box.minY.toFloat(), box.minZ.toFloat(),
+            box.maxX.toFloat(), box.maxY.toFloat(), box.maxZ.toFloat(),
+            true,
+            0x7F102030,
+            outline,
+            skipMask
+        )
+    }
+
+    @Test
+    fun testFacesMatchVertexPositions() {
+        val consumer = emit(outline = false)
+
+        assertEquals(box.vertexPositions().toList(), consumer.vertices)
+        assertEquals(List(24) { 0x7F102030 }, consumer.colors)
+    }
+
+    @Test
+    fun testEdgesMatchOutlineVertexPositions() {
+        assertEquals(box.outlineVertexPositions().toList(), emit(outline = true).vertices)
+    }
+
+    @Test
+    fun testSkipMask() {
+        val expected = box.vertexPositions().filterIndexed { i, _ -> (FACE_UP or FACE_WEST) and (1 shl i) == 0 }
+
+        assertEquals(expected, emit(outline = false, skipMask = FACE_UP or FACE_WEST).vertices)
+    }
+
+}
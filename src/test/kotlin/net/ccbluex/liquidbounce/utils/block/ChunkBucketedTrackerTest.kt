@@ -0,0 +1,102 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import net.minecraft.block.BlockState
+import net.minecraft.util.math.BlockPos
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class ChunkBucketedTrackerTest {
+
+    private class BucketedTracker : AbstractBlockLocationTracker.ChunkBucketed<Int>() {
+        override fun getStateFor(pos: BlockPos, state: BlockState): Int? = null
+    }
+
+    private class ReferenceTracker : AbstractBlockLocationTracker.State2BlockPos<Int>() {
+        override fun getStateFor(pos: BlockPos, state: BlockState): Int? = null
+    }
+
+    /**
+     * Places random states in a synthetic world of 16x16 chunks, each position only once
+     */
+    private fun syntheticWorld(seed: Int) = Random(seed).let { random ->
+        List(20_000) {
+            BlockPos(random.nextInt(-128, 128), random.nextInt(-64, 320), random.nextInt(-128, 128)) to
+                random.nextInt(4)
+        }.distinctBy { (pos, _) -> pos }
+    }
+
+    private fun AbstractBlockLocationTracker<Int>.snapshot() =
+        iterate().associate { (pos, state) -> pos.toImmutable() to state }
+
+    @Test
+    fun testSameContentAsReference() {
+        val bucketed = BucketedTracker()
+        val reference = ReferenceTracker()
+
+        for ((pos, state) in syntheticWorld(1)) {
+            bucketed.track(pos, state)
+            reference.track(pos, state)
+        }
+
+        assertEquals(reference.snapshot(), bucketed.snapshot())
+        assertEquals(reference.allPositions().map { it.toImmutable() }.toSet(),
+            bucketed.allPositions().map { it.toImmutable() }.toSet())
+    }
+
+    @Test
+    fun testClearChunk() {
+        val bucketed = BucketedTracker()
+        val reference = ReferenceTracker()
+
+        for ((pos, state) in syntheticWorld(2)) {
+            bucketed.track(pos, state)
+            reference.track(pos, state)
+        }
+
+        for (x in -8 until 0) {
+            for (z in 0 until 8) {
+                bucketed.clearChunk(x, z)
+                reference.clearChunk(x, z)
+            }
+        }
+
+        val snapshot = bucketed.snapshot()
+        assertEquals(reference.snapshot(), snapshot)
+        assertTrue(snapshot.keys.none { it.x shr 4 in -8 until 0 && it.z shr 4 in 0 until 8 })
+    }
+
+    @Test
+    fun testUntrack() {
+        val bucketed = BucketedTracker()
+        val pos = BlockPos(17, 64, -33)
+
+        assertFalse(bucketed.untrack(pos))
+
+        bucketed.track(pos, 1)
+        assertFalse(bucketed.isEmpty())
+        assertTrue(bucketed.untrack(pos))
+        assertTrue(bucketed.isEmpty())
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of LiquidBounce (https://github.com/CCBlueX/LiquidBounce)
+ *
+ * Copyright (c) 2015 - 2025 CCBlueX
+ *
+ * LiquidBounce is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LiquidBounce is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LiquidBounce. If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.ccbluex.liquidbounce.utils.block
+
+import net.minecraft.util.math.BlockPos
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import kotlin.math.ceil
+
+class SphereOffsetsTest {
+
+    /**
+     * The previous implementation: scan the cuboid and sort by the squared distance
+     */
+    private fun bruteForceSphere(center: BlockPos, radius: Float): List<BlockPos> {
+        val bound = ceil(radius).toInt()
+        val radiusSq = radius * radius
+
+        return BlockPos.iterate(center.add(-bound, -bound, -bound), center.add(bound, bound, bound))
+            .map { it.toImmutable() }
+            .filter { center.getSquaredDistance(it) <= radiusSq }
+            .sortedBy { center.getSquaredDistance(it) }
+    }
+
+    @Test
+    fun testMatchesSortedCuboidScan() {
+        val center = BlockPos(12, -40, 300)
+
+        for (radius in floatArrayOf(0f, 1f, 2.5f, 4.5f, 6f)) {
+            assertEquals(bruteForceSphere(center, radius), SphereOffsets.of(radius).toPositions(center).toList())
+        }
+    }
+
+    @Test
+    fun testForEachReusesMutable() {
+        val center = BlockPos(-7, 64, 3)
+        val sphere = SphereOffsets.of(3f)
+        val visited = mutableListOf<BlockPos>()
+        val mutable = BlockPos.Mutable()
+
+        sphere.forEach(center, mutable) {
+            assertSame(mutable, it)
+            visited += it.toImmutable()
+        }
+
+        assertEquals(sphere.toPositions(center).toList(), visited)
+    }
+
+    @Test
+    fun testCountWithin() {
+        val sphere = SphereOffsets.of(5f)
+
+        assertEquals(SphereOffsets.of(3f).size, sphere.countWithin(9.0))
+        assertEquals(1, sphere.countWithin(0.0))
+        assertEquals(sphere.size, sphere.countWithin(100.0))
+    }
+
+    @Test
+    fun testTablesAreCached() {
+        assertSame(SphereOffsets.of(4.5f), SphereOffsets.of(4.5f))
+    }
+
+}